@@ -0,0 +1,180 @@
+/**
+ * Breadth first search over a dungeon, a whole layer at a time.
+ *
+ * The dungeon is kept as rows of bits, one bit per site, and so is the
+ * frontier. Every site one move away from the frontier is then found with
+ * a few shifts and ands per word: up and down is the row above or below,
+ * left and right is a shift by one bit, and the diagonals are only taken
+ * from room sites into room sites, just like Dungeon.isLegalMove. A layer
+ * costs a handful of operations per 64 sites, instead of a queue operation
+ * and a look at every neighbor of every site.
+ *
+ * Only the rows the frontier can have reached are looked at, so long thin
+ * searches along corridors stay cheap. The bitsets are reused from search
+ * to search, so a BitBfs shouldn't be shared between threads.
+ */
+public class BitBfs {
+    public static final int UNREACHABLE = -1;
+
+    private final int    size;       // sites per row, and rows
+    private final int    words;      // words per row
+    private final long[] walkable;   // not a wall
+    private final long[] room;
+
+    private final long[] visited;
+    private final long[] frontier;
+    private final long[] next;
+
+    public BitBfs(Dungeon dungeon) {
+        size     = dungeon.size();
+        words    = (size + 63) >>> 6;
+        walkable = new long[size * words];
+        room     = new long[size * words];
+        visited  = new long[size * words];
+        frontier = new long[size * words];
+        next     = new long[size * words];
+
+        for(int i = 0; i < size; i += 1)
+            for(int j = 0; j < size; j += 1) {
+                int id = i * size + j;
+                long bit = 1L << (j & 63);
+                if(!dungeon.isWall(id)) walkable[i * words + (j >>> 6)] |= bit;
+                if(dungeon.isRoom(id))  room[i * words + (j >>> 6)]     |= bit;
+            }
+    }
+
+    /*
+     * Fills into with the number of moves from the site with id from to every site,
+     * UNREACHABLE for sites that can't be reached, and returns it. into must hold
+     * size * size ints.
+     */
+    public int[] distances(int from, int[] into) {
+        java.util.Arrays.fill(into, UNREACHABLE);
+        search(from, -1, into);
+        return into;
+    }
+
+    public int[] distances(int from) {
+        return distances(from, new int[size * size]);
+    }
+
+    // the number of moves between the sites with ids from and to, or UNREACHABLE
+    public int distance(int from, int to) {
+        return search(from, to, null);
+    }
+
+    public boolean isReachable(int from, int to) {
+        return distance(from, to) != UNREACHABLE;
+    }
+
+    /*
+     * Searches outwards from from, layer by layer, writing the layer each site is
+     * reached in to field if there is one. Stops early once to is reached.
+     *
+     * @return the layer to was reached in, or UNREACHABLE
+     */
+    private int search(int from, int to, int[] field) {
+        java.util.Arrays.fill(visited, 0);
+        java.util.Arrays.fill(frontier, 0);
+        int row = from / size;
+        int col = from % size;
+        if((walkable[row * words + (col >>> 6)] & (1L << (col & 63))) == 0) {
+            if(field != null) field[from] = 0;
+            return (from == to) ? 0 : UNREACHABLE;
+        }
+
+        frontier[row * words + (col >>> 6)] = 1L << (col & 63);
+        visited[row * words + (col >>> 6)]  = 1L << (col & 63);
+        if(field != null) field[from] = 0;
+        if(from == to) return 0;
+
+        int low = row, high = row;       // the rows the frontier is in
+        for(int layer = 1; true; layer += 1) {
+            int first = Math.max(0, low - 1);
+            int last  = Math.min(size - 1, high + 1);
+            boolean any = false;
+            int newLow = size, newHigh = -1;
+
+            for(int i = first; i <= last; i += 1) {
+                int base = i * words;
+                boolean rowAny = false;
+                for(int w = 0; w < words; w += 1) {
+                    long reach = west(frontier, base, w) | east(frontier, base, w);
+                    long diagonal = 0;
+                    if(i > 0) {
+                        int up = base - words;
+                        reach    |= frontier[up + w];
+                        diagonal |= westRoom(up, w) | eastRoom(up, w);
+                    }
+                    if(i < size - 1) {
+                        int down = base + words;
+                        reach    |= frontier[down + w];
+                        diagonal |= westRoom(down, w) | eastRoom(down, w);
+                    }
+                    reach |= diagonal & room[base + w];
+
+                    long found = reach & walkable[base + w] & ~visited[base + w];
+                    next[base + w] = found;
+                    if(found != 0) rowAny = true;
+                }
+                if(rowAny) {
+                    any     = true;
+                    newLow  = Math.min(newLow, i);
+                    newHigh = i;
+                }
+            }
+            if(!any) return UNREACHABLE;
+
+            // The new layer becomes the frontier
+            int result = UNREACHABLE;
+            for(int i = first; i <= last; i += 1) {
+                int base = i * words;
+                for(int w = 0; w < words; w += 1) {
+                    long found = next[base + w];
+                    frontier[base + w] = found;
+                    visited[base + w] |= found;
+                    if(found == 0) continue;
+
+                    if(to != -1 && to / size == i && (to % size) >>> 6 == w
+                    && (found & (1L << (to % size & 63))) != 0)
+                        result = layer;
+                    if(field != null) {
+                        for(long bits = found; bits != 0; bits &= bits - 1)
+                            field[i * size + (w << 6) + Long.numberOfTrailingZeros(bits)] = layer;
+                    }
+                }
+            }
+
+            if(result != UNREACHABLE) return result;
+            low  = newLow;
+            high = newHigh;
+        }
+    }
+
+    // The sites of row base one column to the right of the frontier (moving east)
+    private long east(long[] bits, int base, int w) {
+        long shifted = bits[base + w] << 1;
+        if(w > 0) shifted |= bits[base + w - 1] >>> 63;
+        return shifted;
+    }
+
+    // The sites of row base one column to the left of the frontier (moving west)
+    private long west(long[] bits, int base, int w) {
+        long shifted = bits[base + w] >>> 1;
+        if(w < words - 1) shifted |= bits[base + w + 1] << 63;
+        return shifted;
+    }
+
+    // The same, starting only from frontier sites in rooms, for the diagonal moves
+    private long eastRoom(int base, int w) {
+        long shifted = (frontier[base + w] & room[base + w]) << 1;
+        if(w > 0) shifted |= (frontier[base + w - 1] & room[base + w - 1]) >>> 63;
+        return shifted;
+    }
+
+    private long westRoom(int base, int w) {
+        long shifted = (frontier[base + w] & room[base + w]) >>> 1;
+        if(w < words - 1) shifted |= (frontier[base + w + 1] & room[base + w + 1]) << 63;
+        return shifted;
+    }
+}
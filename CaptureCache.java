@@ -0,0 +1,63 @@
+/**
+ * A fixed size hash table remembering what is already known about whether
+ * a Monster can force a capture, so that SiteGraphSearcher doesn't have to
+ * work it out again, not even on later turns.
+ * 
+ * For each (monster, rogue) pair it keeps the fewest moves the capture is
+ * known to take, and the most moves it is known not to be possible in.
+ * When two pairs land on the same slot, the newer one wins.
+ */
+public class CaptureCache {
+    public static final int UNKNOWN = -1;
+
+    private final long   sites;
+    private final int    shift;
+    private final long[] keys;
+    private final short[] within;      // capture is possible within this many moves
+    private final short[] notWithin;   // capture isn't possible within this many moves
+
+    /**
+     * Constructs a cache for a graph with the given number of sites, holding 2^bits pairs.
+     */
+    public CaptureCache(int sites, int bits) {
+        this.sites = sites;
+        shift     = 64 - bits;
+        keys      = new long[1 << bits];
+        within    = new short[1 << bits];
+        notWithin = new short[1 << bits];
+        java.util.Arrays.fill(keys, -1);
+    }
+
+    /**
+     * @return true if the monster is known to catch the rogue within depth moves, false if it
+     * is known not to, or null if it isn't known yet
+     */
+    public Boolean lookup(int monster, int rogue, int depth) {
+        long key = monster * sites + rogue;
+        int slot = slot(key);
+        if(keys[slot]!=key) return null;
+        if(within[slot]!=UNKNOWN && depth>=within[slot]) return Boolean.TRUE;
+        if(notWithin[slot]!=UNKNOWN && depth<=notWithin[slot]) return Boolean.FALSE;
+        return null;
+    }
+
+    /**
+     * Records whether the monster can catch the rogue within depth moves.
+     */
+    public void store(int monster, int rogue, int depth, boolean caught) {
+        long key = monster * sites + rogue;
+        int slot = slot(key);
+        if(keys[slot]!=key) {
+            keys[slot]      = key;
+            within[slot]    = UNKNOWN;
+            notWithin[slot] = UNKNOWN;
+        }
+        if(caught && (within[slot]==UNKNOWN || depth<within[slot]))  within[slot]    = (short)depth;
+        if(!caught && depth>notWithin[slot])                         notWithin[slot] = (short)depth;
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;   // spread neighboring pairs over the table
+        return (int)(h >>> shift);
+    }
+}
@@ -0,0 +1,289 @@
+import java.nio.ByteBuffer;
+/**
+ * Works out which corridors the rogue can use to get away, in a single pass
+ * over the corridors, however tangled they are.
+ *
+ * The corridors are split into their biconnected components (blocks) with
+ * Tarjan's algorithm: a block is either a single passage between two
+ * corridor sites, or a set of sites that all lie on loops. The blocks and
+ * the sites joining them (cut vertices) form a tree for each connected
+ * stretch of corridor, and in a tree the routes between the interesting
+ * places are easy to find:
+ *
+ *  - a site is in a loop if its block has three or more sites
+ *  - a site is viable if it lies on a route from a corridor start to another
+ *    start or to a loop, that is, if its block is in the smallest subtree
+ *    holding all the starts and loops of its stretch of corridor
+ *  - a corridor start is safe if its stretch of corridor has another start
+ *    or a loop it could run to
+ *
+ * Stretches of corridor that no start leads into are left out, since the
+ * rogue never gets there. Everything is done with arrays indexed like the
+ * graph, and the depth first search keeps its own stack, so it runs in time
+ * linear in the number of corridor sites.
+ */
+public class CorridorAnalysis {
+    // What flags() says about a site
+    public static final int START  = 1;
+    public static final int LOOP   = 2;
+    public static final int VIABLE = 4;
+    public static final int SAFE   = 8;
+
+    private final Graph<Site> graph;
+    private final boolean[] corridor;
+    private final boolean[] start;       // corridor sites next to a room
+    private final boolean[] inLoop;
+    private final boolean[] viable;
+    private final boolean[] safeStart;
+
+    // The blocks, each one a run of sites in members
+    private int[] members    = new int[16];
+    private int[] blockStart = new int[16];   // blockStart[b] .. blockStart[b + 1] - 1
+    private int   memberCount, blockCount;
+
+    public CorridorAnalysis(Dungeon dungeon, Graph<Site> graph) {
+        this.graph = graph;
+        int n      = graph.capacity();
+        corridor   = new boolean[n];
+        start      = new boolean[n];
+        inLoop     = new boolean[n];
+        viable     = new boolean[n];
+        safeStart  = new boolean[n];
+
+        for(int v = 0; v < n; v += 1) {
+            Site site = graph.vertexAt(v);
+            corridor[v] = (site != null && dungeon.isCorridor(site));
+        }
+        for(int v = 0; v < n; v += 1) {
+            if(!corridor[v]) continue;
+            for(int k = 0; k < graph.degree(v); k += 1)
+                if(dungeon.isRoom(graph.vertexAt(graph.neighbor(v, k)))) start[v] = true;
+        }
+
+        int[] component = findBlocks();
+        markRoutes(component);
+    }
+
+    /*
+     * An analysis that has already been done, given as the flags() of every site,
+     * as kept in a DungeonFile
+     */
+    public CorridorAnalysis(Graph<Site> graph, ByteBuffer flags) {
+        this.graph = graph;
+        int n      = graph.capacity();
+        if(flags.remaining() != n)
+            throw new IllegalArgumentException(flags.remaining() + " flags for " + n + " sites");
+        corridor   = null;
+        start      = new boolean[n];
+        inLoop     = new boolean[n];
+        viable     = new boolean[n];
+        safeStart  = new boolean[n];
+        for(int v = 0; v < n; v += 1) {
+            int f = flags.get(flags.position() + v);
+            start[v]     = (f & START)  != 0;
+            inLoop[v]    = (f & LOOP)   != 0;
+            viable[v]    = (f & VIABLE) != 0;
+            safeStart[v] = (f & SAFE)   != 0;
+        }
+    }
+
+    // everything known about the site with index v, as START, LOOP, VIABLE and SAFE bits
+    public byte flags(int v) {
+        return (byte) ((start[v]  ? START  : 0) | (inLoop[v]    ? LOOP : 0) 
+                     | (viable[v] ? VIABLE : 0) | (safeStart[v] ? SAFE : 0));
+    }
+
+    public boolean isCorridorStart(int v) { return start[v];     }
+
+    public boolean inLoop(int v)          { return inLoop[v];    }
+
+    public boolean isViable(int v)        { return viable[v];    }
+
+    public boolean isSafeStart(int v)     { return safeStart[v]; }
+
+    /*
+     * Tarjan's algorithm, without recursion. The edges are kept on a stack as they are
+     * found, and whenever the search backs out of a site v to its parent p with
+     * low[v] >= disc[p], the edges above (p, v) make up a block.
+     *
+     * @return the connected stretch of corridor each site is in, -1 for anything else
+     */
+    private int[] findBlocks() {
+        int   n         = corridor.length;
+        int[] disc      = new int[n];     // 0 until the site is reached
+        int[] low       = new int[n];
+        int[] parent    = new int[n];
+        int[] next      = new int[n];     // the next neighbor to look at
+        int[] component = new int[n];
+        int[] stack     = new int[n];
+        int[] edgeFrom  = new int[4 * n];
+        int[] edgeTo    = new int[4 * n];
+        int[] seen      = new int[n];     // last block each site was added to, plus one
+        java.util.Arrays.fill(component, -1);
+
+        int time = 0, components = 0;
+        for(int root = 0; root < n; root += 1) {
+            if(!corridor[root] || disc[root] != 0) continue;
+
+            int top = 0, edges = 0;
+            stack[top++]    = root;
+            disc[root]      = low[root] = ++time;
+            parent[root]    = -1;
+            component[root] = components;
+            while(top > 0) {
+                int v = stack[top - 1];
+                if(next[v] < graph.degree(v)) {
+                    int w = graph.neighbor(v, next[v]++);
+                    if(w == v || !corridor[w]) continue;
+                    if(disc[w] == 0) {
+                        edgeFrom[edges] = v;
+                        edgeTo[edges++] = w;
+                        disc[w]      = low[w] = ++time;
+                        parent[w]    = v;
+                        component[w] = components;
+                        stack[top++] = w;
+                    } else if(w != parent[v] && disc[w] < disc[v]) {
+                        edgeFrom[edges] = v;
+                        edgeTo[edges++] = w;
+                        low[v] = Math.min(low[v], disc[w]);
+                    }
+                    continue;
+                }
+
+                top -= 1;
+                int p = parent[v];
+                if(p == -1) continue;
+                low[p] = Math.min(low[p], low[v]);
+                if(low[v] >= disc[p]) {
+                    // everything from (p, v) up is one block
+                    openBlock();
+                    int from, to;
+                    do {
+                        edges -= 1;
+                        from = edgeFrom[edges];
+                        to   = edgeTo[edges];
+                        if(seen[from] != blockCount + 1) { seen[from] = blockCount + 1; addMember(from); }
+                        if(seen[to]   != blockCount + 1) { seen[to]   = blockCount + 1; addMember(to);   }
+                    } while(from != p || to != v);
+                    blockCount += 1;
+                }
+            }
+            components += 1;
+        }
+        blockStart[blockCount] = memberCount;
+        return component;
+    }
+
+    /*
+     * Finds the smallest subtree of the block tree holding all the starts and loops,
+     * by trimming leaves that are neither, over and over, and marks what's left.
+     */
+    private void markRoutes(int[] component) {
+        int n = corridor.length;
+
+        // Which blocks each site is in; sites in more than one are cut vertices
+        int[] blockCountOf = new int[n];
+        for(int i = 0; i < memberCount; i += 1) blockCountOf[members[i]] += 1;
+        int[] firstBlock = new int[n + 1];
+        for(int v = 0; v < n; v += 1) firstBlock[v + 1] = firstBlock[v] + blockCountOf[v];
+        int[] blocksOf = new int[memberCount];
+        int[] filled   = new int[n];
+        for(int b = 0; b < blockCount; b += 1)
+            for(int i = blockStart[b]; i < blockStart[b + 1]; i += 1) {
+                int v = members[i];
+                blocksOf[firstBlock[v] + filled[v]++] = b;
+            }
+
+        // The places worth running to in each stretch of corridor. Two sites of corridor 
+        // along the side of a room don't get the rogue anywhere, so it takes three.
+        int components = 0;
+        for(int v = 0; v < n; v += 1) components = Math.max(components, component[v] + 1);
+        int[] places = new int[components];
+        int[] sites  = new int[components];
+        for(int v = 0; v < n; v += 1) {
+            if(component[v] != -1) sites[component[v]] += 1;
+            if(start[v])           places[component[v]] += 1;
+        }
+        for(int c = 0; c < components; c += 1)
+            if(sites[c] < 3) places[c] = 0;
+        boolean[] loop = new boolean[blockCount];
+        for(int b = 0; b < blockCount; b += 1) {
+            loop[b] = (blockStart[b + 1] - blockStart[b] >= 3);
+            if(loop[b]) places[component[members[blockStart[b]]]] += 1;
+        }
+
+        /*
+         * Tree nodes are the blocks, 0 .. blockCount - 1, and the cut vertices, blockCount + v.
+         * A start inside a single block makes the block worth keeping; a start that is a
+         * cut vertex is kept itself.
+         */
+        boolean[] keep   = new boolean[blockCount + n];
+        boolean[] gone   = new boolean[blockCount + n];
+        int[]     degree = new int[blockCount + n];
+        for(int b = 0; b < blockCount; b += 1) {
+            keep[b] = loop[b];
+            gone[b] = (places[component[members[blockStart[b]]]] < 2);
+            for(int i = blockStart[b]; i < blockStart[b + 1]; i += 1) {
+                int v = members[i];
+                if(blockCountOf[v] > 1)  degree[b] += 1;
+                else if(start[v])        keep[b] = true;
+            }
+        }
+        for(int v = 0; v < n; v += 1) {
+            if(blockCountOf[v] < 2) continue;
+            degree[blockCount + v] = blockCountOf[v];
+            keep[blockCount + v]   = start[v];
+            gone[blockCount + v]   = (places[component[v]] < 2);
+        }
+
+        int[] leaves = new int[blockCount + n];
+        int   count  = 0;
+        for(int node = 0; node < blockCount + n; node += 1)
+            if(!gone[node] && !keep[node] && degree[node] <= 1 && (node < blockCount || blockCountOf[node - blockCount] > 1))
+                leaves[count++] = node;
+        while(count > 0) {
+            int node = leaves[--count];
+            gone[node] = true;
+            if(node < blockCount) {
+                for(int i = blockStart[node]; i < blockStart[node + 1]; i += 1) {
+                    int v = members[i];
+                    if(blockCountOf[v] > 1) count = trim(blockCount + v, degree, keep, gone, leaves, count);
+                }
+            } else {
+                int v = node - blockCount;
+                for(int i = firstBlock[v]; i < firstBlock[v + 1]; i += 1)
+                    count = trim(blocksOf[i], degree, keep, gone, leaves, count);
+            }
+        }
+
+        for(int b = 0; b < blockCount; b += 1) {
+            if(gone[b]) continue;
+            for(int i = blockStart[b]; i < blockStart[b + 1]; i += 1) {
+                viable[members[i]] = true;
+                if(loop[b]) inLoop[members[i]] = true;
+            }
+        }
+        for(int v = 0; v < n; v += 1)
+            safeStart[v] = start[v] && places[component[v]] >= 2;
+    }
+
+    // Takes one neighbor away from node, and queues it up once it becomes a leaf
+    private int trim(int node, int[] degree, boolean[] keep, boolean[] gone, int[] leaves, int count) {
+        if(gone[node]) return count;
+        degree[node] -= 1;
+        if(degree[node] == 1 && !keep[node]) leaves[count++] = node;
+        return count;
+    }
+
+    private void openBlock() {
+        if(blockCount + 2 > blockStart.length)
+            blockStart = java.util.Arrays.copyOf(blockStart, 2 * blockStart.length);
+        blockStart[blockCount] = memberCount;
+    }
+
+    private void addMember(int v) {
+        if(memberCount == members.length)
+            members = java.util.Arrays.copyOf(members, 2 * members.length);
+        members[memberCount++] = v;
+    }
+}
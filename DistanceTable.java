@@ -0,0 +1,137 @@
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ShortBuffer;
+import java.util.stream.IntStream;
+/**
+ * The length of the shortest path between every pair of sites in a dungeon.
+ * 
+ * Since the dungeon never changes, a breadth first search is run once from
+ * every site that isn't a wall, spread over all cores, and the results are
+ * kept in a single short array. After that, the distance between two sites
+ * and the next step towards a site are simple lookups.
+ * 
+ * The table grows with the square of the number of sites, so it is only
+ * worked out for dungeons of up to MAX_SITES open sites. It can also be read straight
+ * out of a DungeonFile, in which case it is never worked out at all.
+ */
+public class DistanceTable {
+    public static final int UNREACHABLE = -1;
+    public static final int MAX_SITES   = 4096;   // 32 MB of distances
+
+    private final Graph<Site> graph;
+    private final int[]   rows;        // graph index -> row of the table, -1 for walls
+    private final int     count;       // sites in the table
+    private final ShortBuffer distances;   // count x count
+
+    public DistanceTable(final Graph<Site> graph) {
+        this.graph = graph;
+        this.rows  = new int[graph.capacity()];
+        this.count = numberRows(graph, rows);
+        if(count > MAX_SITES)
+            throw new IllegalArgumentException("can't work out distances for " + count
+                                               + " open sites, a table holds at most " + MAX_SITES);
+        short[] table = new short[(int) ((long) count * count)];
+        java.util.Arrays.fill(table, (short) UNREACHABLE);
+
+        // Each source writes only its own row, so the searches can run side by side
+        IntStream.range(0, rows.length).parallel().forEach(v -> {
+            if(rows[v] != -1) search(v, table);
+        });
+        this.distances = ShortBuffer.wrap(table);
+    }
+
+    /*
+     * A table for graph that has already been worked out, as written by write(). 
+     * The distances aren't copied, so they can come straight from a mapped file.
+     */
+    public DistanceTable(Graph<Site> graph, ShortBuffer distances) {
+        this.graph = graph;
+        this.rows  = new int[graph.capacity()];
+        this.count = numberRows(graph, rows);
+        if(distances.remaining() != (long) count * count)
+            throw new IllegalArgumentException(distances.remaining() + " distances for " + count + " sites");
+        this.distances = distances.slice();
+    }
+
+    // Gives every open site of graph its row of the table, and the rest -1
+    private static int numberRows(Graph<Site> graph, int[] rows) {
+        int n = 0;
+        for(int v = 0; v < rows.length; v += 1)
+            rows[v] = (graph.vertexAt(v) != null && graph.degree(v) > 0) ? n++ : -1;
+        return n;
+    }
+
+    /*
+     * Writes the distances, row by row, in the form the constructor above reads them
+     */
+    public void write(DataOutput out) throws IOException {
+        for(int i = 0; i < count * count; i += 1) out.writeShort(distances.get(i));
+    }
+
+    // how many distances write() writes
+    public int entries() {
+        return count * count;
+    }
+
+    /*
+     * @return how many open (non-wall) sites there are in graph
+     */
+    public static int openSites(Graph<Site> graph) {
+        int n = 0;
+        for(int v = 0; v < graph.capacity(); v += 1)
+            if(graph.vertexAt(v) != null && graph.degree(v) > 0) n += 1;
+        return n;
+    }
+
+    /*
+     * @return the number of moves from the site with index from to the one with index to,
+     *         or UNREACHABLE if there is no way there
+     */
+    public int distance(int from, int to) {
+        int a = rows[from], b = rows[to];
+        if(a == -1 || b == -1) return UNREACHABLE;
+        return distances.get(a * count + b);
+    }
+
+    public int distance(Site from, Site to) {
+        return distance(graph.indexOf(from), graph.indexOf(to));
+    }
+
+    /*
+     * @return the first neighbor of from on a shortest path to to, or null if to can't be
+     *         reached or has been already
+     */
+    public Site nextHop(Site from, Site to) {
+        int f = graph.indexOf(from);
+        int t = graph.indexOf(to);
+        int d = distance(f, t);
+        if(d == UNREACHABLE || d == 0) return null;
+
+        for(int k = 0; k < graph.degree(f); k += 1) {
+            int next = graph.neighbor(f, k);
+            if(distance(next, t) == d - 1) return graph.vertexAt(next);
+        }
+        return null;
+    }
+
+    // Breadth first search from source, filling in its row of the table
+    private void search(int source, short[] distances) {
+        int   row   = rows[source] * count;
+        int[] queue = new int[count];
+        int   head  = 0, tail = 0;
+
+        distances[row + rows[source]] = 0;
+        queue[tail++] = source;
+        while(head < tail) {
+            int v = queue[head++];
+            short next = (short) (distances[row + rows[v]] + 1);
+            for(int k = 0; k < graph.degree(v); k += 1) {
+                int w = graph.neighbor(v, k);
+                if(distances[row + rows[w]] == UNREACHABLE) {
+                    distances[row + rows[w]] = next;
+                    queue[tail++] = w;
+                }
+            }
+        }
+    }
+}
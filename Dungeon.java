@@ -8,32 +8,91 @@
 
 
 public class Dungeon {
-    private boolean[][] isRoom;        // is v-w a room site?
-    private boolean[][] isCorridor;    // is v-w a corridor site?
-    private int size;                     // dimension of dungeon
+    // what each cell holds
+    public static final byte WALL     = 0;
+    public static final byte ROOM     = 1;
+    public static final byte CORRIDOR = 2;
+
+    private final byte[]  cells;          // WALL, ROOM or CORRIDOR, by row * size + col
+    private final short[] moves;          // legal moves out of each cell, see moves()
+    private final int size;               // dimension of dungeon
+    private final Site[] sites;           // the one Site for each cell, by row * size + col
 
     // initialize a new dungeon based on the given board
     public Dungeon(char[][] board) {
-        size = board.length;
-        isRoom     = new boolean[size][size];
-        isCorridor = new boolean[size][size];
+        this(board.length, cellsOf(board));
+    }
+
+    // initialize a new size x size dungeon from what each cell holds, by row * size + col;
+    // cells is copied, since equal dungeons share a graph and the copy mustn't change
+    public Dungeon(int size, byte[] cells) {
+        if (cells.length != size * size)
+            throw new IllegalArgumentException(cells.length + " cells for a " + size + " x " + size + " dungeon");
+        this.size  = size;
+        this.cells = cells.clone();
+
+        // work out every legal move once, so checking one later is a single lookup
+        moves = new short[size * size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                int v = i * size + j;
+                if (cells[v] == WALL) continue;
+                for (int di = -1; di <= 1; di++) {
+                    for (int dj = -1; dj <= 1; dj++) {
+                        int i2 = i + di;
+                        int j2 = j + dj;
+                        if (i2 < 0 || j2 < 0 || i2 >= size || j2 >= size) continue;
+                        int w = i2 * size + j2;
+                        if (cells[w] == WALL) continue;
+                        if (di != 0 && dj != 0 && !(cells[v] == ROOM && cells[w] == ROOM)) continue;
+                        moves[v] |= 1 << direction(di, dj);
+                    }
+                }
+            }
+        }
+
+        sites = new Site[size * size];
+        for (int i = 0; i < size; i++)
+            for (int j = 0; j < size; j++)
+                sites[i * size + j] = new Site(i, j, i * size + j);
+    }
+
+    private static byte[] cellsOf(char[][] board) {
+        int size = board.length;
+        byte[] cells = new byte[size * size];
         for (int i = 0; i < size; i++) {
             for (int j = 0; j < size; j++) {
-                if      (board[i][j] == '.') isRoom[i][j] = true;
-                else if (board[i][j] == '+') isCorridor[i][j] = true;
+                if      (board[i][j] == '.') cells[i * size + j] = ROOM;
+                else if (board[i][j] == '+') cells[i * size + j] = CORRIDOR;
             }
         }
+        return cells;
     }
 
     // return dimension of dungeon
     public int size() { return size; }
 
+    // return what the cell with the given id holds: WALL, ROOM or CORRIDOR
+    public byte cell(int id) { return cells[id]; }
+
+    // return the canonical site at (i, j), or a throwaway one if it lies outside the dungeon
+    public Site site(int i, int j) {
+        if (i < 0 || j < 0 || i >= size() || j >= size()) return new Site(i, j);
+        return sites[i * size + j];
+    }
+
+    // return the canonical site with the given id
+    public Site site(int id) { return sites[id]; }
+
+    // return the canonical instance of v
+    public Site intern(Site v) { return site(v.row(), v.col()); }
+
     // does v correspond to a corridor site? 
     public boolean isCorridor(Site v) {
         int i = v.row();
         int j = v.col();
         if (i < 0 || j < 0 || i >= size() || j >= size()) return false;
-        return isCorridor[i][j];
+        return cells[i * size + j] == CORRIDOR;
     }
 
     // does v correspond to a room site?
@@ -41,12 +100,15 @@ public class Dungeon {
         int i = v.row();
         int j = v.col();
         if (i < 0 || j < 0 || i >= size() || j >= size()) return false;
-        return isRoom[i][j];
+        return cells[i * size + j] == ROOM;
     }
 
     // does v correspond to a wall site?
     public boolean isWall(Site v) {
-        return (!isRoom(v) && !isCorridor(v));
+        int i = v.row();
+        int j = v.col();
+        if (i < 0 || j < 0 || i >= size() || j >= size()) return true;
+        return cells[i * size + j] == WALL;
     }
 
     // does v-w correspond to a legal move?
@@ -58,14 +120,49 @@ public class Dungeon {
         int j2 = w.col();
         if (i1 < 0 || j1 < 0 || i1 >= size() || j1 >= size()) return false;
         if (i2 < 0 || j2 < 0 || i2 >= size() || j2 >= size()) return false;
-        if (isWall(v) || isWall(w)) return false;
         if (Math.abs(i1 - i2) > 1)  return false;
         if (Math.abs(j1 - j2) > 1)  return false;
-        if (isRoom(v) && isRoom(w)) return true;
-        if (i1 == i2)               return true;
-        if (j1 == j2)               return true;
+        return (moves[i1 * size + j1] & (1 << direction(i2 - i1, j2 - j1))) != 0;
+    }
+
+    /*
+     * The same questions about the cell with the given id (row * size + col), for
+     * searches that work with ids rather than Sites. The id must lie in the dungeon.
+     */
+    public boolean isCorridor(int id) { return cells[id] == CORRIDOR; }
+
+    public boolean isRoom(int id)     { return cells[id] == ROOM;     }
+
+    public boolean isWall(int id)     { return cells[id] == WALL;     }
+
+    public boolean isLegalMove(int from, int to) {
+        int di = to / size - from / size;
+        int dj = to % size - from % size;
+        if (di < -1 || di > 1 || dj < -1 || dj > 1) return false;
+        return (moves[from] & (1 << direction(di, dj))) != 0;
+    }
+
+    /*
+     * The legal moves out of the cell with the given id, one bit per direction:
+     * bit 3 * (di + 1) + (dj + 1) is set if moving di rows and dj columns is legal.
+     * Staying put is bit 4, set for every cell that isn't a wall. Going through the
+     * bits from lowest to highest visits the cells in row-major order.
+     */
+    public int moves(int id) { return moves[id]; }
+
+    // the bit for a move of di rows and dj columns, each -1, 0 or 1
+    public static int direction(int di, int dj) { return 3 * (di + 1) + (dj + 1); }
+
+    // two dungeons are equal if they have the same cells, wherever they were read from
+    public boolean equals(Object other) {
+        if (other == this) return true;
+        if (!(other instanceof Dungeon)) return false;
+        Dungeon that = (Dungeon) other;
+        return size == that.size && java.util.Arrays.equals(cells, that.cells);
+    }
 
-        return false;
+    public int hashCode() {
+        return 31 * size + java.util.Arrays.hashCode(cells);
     }
 
 }
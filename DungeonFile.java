@@ -0,0 +1,218 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Scanner;
+/*************************************************************************
+ *  Compilation:  javac DungeonFile.java
+ *
+ *  Execution:
+ *      java DungeonFile [-distances] [-corridors] [-tablebase] dungeonX [dungeonY ...]
+ *          converts dungeons/dungeonX.txt to dungeons/dungeonX.rgd, along with
+ *          whichever of the tables are asked for
+ *
+ *  A dungeon in binary, ready to play as soon as it is mapped into memory.
+ *
+ *  The file starts with a header of ints: magic, version, rows, columns,
+ *  the monster's row and column, the rogue's row and column, the monster's
+ *  name and the number of sections. Then come the cells, four to a byte
+ *  (Dungeon.WALL, ROOM or CORRIDOR in two bits, the first cell in the top
+ *  bits), and then the sections, each an int tag, an int holding the
+ *  number of bytes that follow, and those bytes:
+ *
+ *      DIST   the DistanceTable, as shorts
+ *      CORR   the CorridorAnalysis, a byte of flags per site
+ *      TBAS   the Tablebase, as shorts
+ *
+ *  Everything starts on a multiple of 8 bytes, so the tables can be used
+ *  as they are, straight from the mapping, without being copied or
+ *  worked out again. Unknown sections are skipped.
+ *************************************************************************/
+
+public class DungeonFile {
+    private static final int MAGIC   = 0x52474446;   // "RGDF"
+    private static final int VERSION = 1;
+    private static final int HEADER  = 40;
+
+    public static final int DISTANCES = 0x44495354;  // "DIST"
+    public static final int CORRIDORS = 0x434f5252;  // "CORR"
+    public static final int TABLEBASE = 0x54424153;  // "TBAS"
+
+    private Dungeon     dungeon;
+    private Site        monsterSite, rogueSite;
+    private char        monsterDisp;
+    private ShortBuffer distances;   // null unless the file has them
+    private ByteBuffer  corridors;
+    private ShortBuffer tablebase;
+
+    private DungeonFile() { }
+
+    /*
+     * Maps file into memory. Only the cells are read into the heap; the tables are
+     * left in the mapping until they are used.
+     */
+    public static DungeonFile read(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if(buffer.limit() < HEADER || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+                throw new IOException(file + " isn't a dungeon file");
+            int rows = buffer.getInt(8), cols = buffer.getInt(12);
+            if(rows != cols || rows <= 0)
+                throw new IOException(file + " is " + rows + " x " + cols + ", dungeons must be square");
+
+            DungeonFile dungeonFile = new DungeonFile();
+            int size = rows;
+            byte[] cells = new byte[size * size];
+            byte[] packed = new byte[(cells.length + 3) / 4];
+            buffer.position(HEADER);
+            buffer.get(packed);
+            for(int i = 0; i < cells.length; i += 1) {
+                int b = packed[i >> 2] >> (6 - 2 * (i & 3)) & 3;
+                if(b > Dungeon.CORRIDOR) throw new IOException(file + " has a cell of unknown type " + b);
+                cells[i] = (byte) b;
+            }
+            dungeonFile.dungeon     = new Dungeon(size, cells);
+            dungeonFile.monsterSite = dungeonFile.dungeon.site(buffer.getInt(16), buffer.getInt(20));
+            dungeonFile.rogueSite   = dungeonFile.dungeon.site(buffer.getInt(24), buffer.getInt(28));
+            dungeonFile.monsterDisp = (char) buffer.getInt(32);
+
+            int sections = buffer.getInt(36);
+            int at = align(HEADER + packed.length);
+            for(int s = 0; s < sections; s += 1) {
+                int tag    = buffer.getInt(at);
+                int length = buffer.getInt(at + 4);
+                buffer.position(at + 8);
+                buffer.limit(at + 8 + length);
+                ByteBuffer section = buffer.slice();
+                buffer.limit(buffer.capacity());
+
+                if     (tag == DISTANCES) dungeonFile.distances = section.asShortBuffer();
+                else if(tag == CORRIDORS) dungeonFile.corridors = section;
+                else if(tag == TABLEBASE) dungeonFile.tablebase = section.asShortBuffer();
+                at = align(at + 8 + length);
+            }
+            return dungeonFile;
+        } finally {
+            raf.close();   // the mapping stays valid after the channel is closed
+        }
+    }
+
+    /*
+     * Writes game's dungeon and spawn points to file, with the tables of game that are
+     * asked for, worked out first if the game doesn't have them already. Nothing is
+     * written if a table is asked for that the dungeon is too large to have.
+     */
+    public static void write(File file, Game game, boolean distances, boolean corridors, boolean tablebase)
+    throws IOException {
+        Dungeon dungeon = game.getDungeon();
+        int     size    = dungeon.size();
+        int     n       = size * size;
+
+        DistanceTable table = game.getDistances();
+        if(distances && table == null) {
+            int open = DistanceTable.openSites(game.getGraph());
+            if(open > DistanceTable.MAX_SITES)
+                throw new IllegalArgumentException(open + " open sites, too many for a distance table"
+                                                   + " (at most " + DistanceTable.MAX_SITES + ")");
+            table = new DistanceTable(game.getGraph());
+        }
+        Tablebase solved = game.getTablebase();
+        if(tablebase && solved == null) solved = Tablebase.solve(dungeon, game.getGraph());
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(size);
+            out.writeInt(size);
+            out.writeInt(game.getMonsterSite().row());
+            out.writeInt(game.getMonsterSite().col());
+            out.writeInt(game.getRogueSite().row());
+            out.writeInt(game.getRogueSite().col());
+            out.writeInt(game.getMonsterDisp());
+            out.writeInt((distances ? 1 : 0) + (corridors ? 1 : 0) + (tablebase ? 1 : 0));
+
+            int packed = 0;
+            for(int i = 0; i < n; i += 1) {
+                packed = packed << 2 | dungeon.cell(i);
+                if(i % 4 == 3) { out.writeByte(packed); packed = 0; }
+            }
+            if(n % 4 != 0) out.writeByte(packed << 2 * (4 - n % 4));
+            pad(out);
+
+            if(distances) {
+                out.writeInt(DISTANCES);
+                out.writeInt(2 * table.entries());
+                table.write(out);
+                pad(out);
+            }
+            if(corridors) {
+                out.writeInt(CORRIDORS);
+                out.writeInt(n);
+                CorridorAnalysis analysis = game.getCorridors();
+                for(int v = 0; v < n; v += 1) out.writeByte(analysis.flags(v));
+                pad(out);
+            }
+            if(tablebase) {
+                out.writeInt(TABLEBASE);
+                out.writeInt(2 * solved.entries());
+                solved.writePlies(out);
+                pad(out);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    public Dungeon getDungeon()       { return dungeon;     }
+
+    public Site getMonsterSite()      { return monsterSite; }
+
+    public Site getRogueSite()        { return rogueSite;   }
+
+    public char getMonsterDisp()      { return monsterDisp; }
+
+    // the tables, as they lie in the file, or null for those it doesn't have
+    public ShortBuffer getDistances() { return distances;   }
+
+    public ByteBuffer getCorridors()  { return corridors;   }
+
+    public ShortBuffer getTablebase() { return tablebase;   }
+
+    private static int align(int at) {
+        return (at + 7) & ~7;
+    }
+
+    private static void pad(DataOutputStream out) throws IOException {
+        while(out.size() % 8 != 0) out.writeByte(0);
+    }
+
+    public static void main(String[] args) throws Exception {
+        boolean distances = false, corridors = false, tablebase = false;
+        for (String name : args) {
+            if      (name.equals("-distances")) { distances = true; continue; }
+            else if (name.equals("-corridors")) { corridors = true; continue; }
+            else if (name.equals("-tablebase")) { tablebase = true; continue; }
+
+            Scanner in = new Scanner(new File("dungeons/" + name + ".txt"));
+            Game game = new Game(in);
+            in.close();
+
+            File file = new File("dungeons/" + name + ".rgd");
+            try {
+                write(file, game, distances, corridors, tablebase);
+                System.out.println(name + ": " + file.length() + " bytes");
+            } catch (IllegalArgumentException e) {
+                System.out.println(name + ": not written, " + e.getMessage());
+            }
+        }
+    }
+}
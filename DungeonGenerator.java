@@ -0,0 +1,293 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+/*************************************************************************
+ *  Compilation:  javac DungeonGenerator.java
+ *
+ *  Execution:
+ *      java DungeonGenerator size [-seed S] [-rooms R] [-loops L] [-deadends D] > dungeons/dungeonZ.txt
+ *
+ *  Makes up dungeons of any size, in the same text format as the files in
+ *  dungeons/, so that everything can be tried on boards much bigger than
+ *  the 20 x 20 ones that come with the game.
+ *
+ *      -seed S       the same seed and settings always give the same dungeon (default 0)
+ *      -rooms R      fraction of the board covered by rooms (default 0.25)
+ *      -loops L      corridor loops per 100 rooms (default 20)
+ *      -deadends D   dead end corridors per 100 rooms (default 20)
+ *
+ *  Rooms are placed at random without touching each other. Each room is
+ *  joined by an L-shaped corridor to the nearest room placed before it,
+ *  so every room can be reached. Then some rooms get a second corridor,
+ *  to their next nearest room, and some corridors get a side passage that
+ *  rejoins them, which make loops; and some corridors get a branch that
+ *  goes nowhere. The monster starts in one room and the rogue in the room
+ *  farthest from it.
+ *************************************************************************/
+
+public class DungeonGenerator {
+    private static final int MIN_ROOM = 3;
+    private static final int MAX_ROOM = 12;
+    private static final int TRIES    = 50;      // failed placements in a row before giving up
+
+    private final int    size;
+    private final Random random;
+    private double roomDensity = 0.25;
+    private int    loops       = 20;
+    private int    deadEnds    = 20;
+
+    private char[][]    board;
+    private List<int[]> rooms;                   // top, left, height, width
+    private List<int[]> corridors;               // every corridor site carved, as row, col
+    private int[]       monster, rogue;
+
+    public DungeonGenerator(int size, long seed) {
+        if (size < MIN_ROOM) throw new IllegalArgumentException("a dungeon needs to be at least " + MIN_ROOM + " wide");
+        this.size   = size;
+        this.random = new Random(seed);
+    }
+
+    public void setRoomDensity(double density) { roomDensity = density; }
+
+    // corridor loops per 100 rooms
+    public void setLoops(int loops)            { this.loops = loops; }
+
+    // dead end corridors per 100 rooms
+    public void setDeadEnds(int deadEnds)      { this.deadEnds = deadEnds; }
+
+    /*
+     * Generates the dungeon. Room sites are '.', corridor sites '+' and walls ' ',
+     * as in a dungeon file without the monster and rogue on it.
+     */
+    public char[][] generate() {
+        board     = new char[size][size];
+        rooms     = new ArrayList<int[]>();
+        corridors = new ArrayList<int[]>();
+        for (char[] row : board) java.util.Arrays.fill(row, ' ');
+
+        placeRooms();
+        for (int r = 1; r < rooms.size(); r++)
+            join(rooms.get(r), rooms.get(nearest(r, r, -1)));
+
+        for (int k = 0; k < rooms.size() * loops / 100; k++) {
+            // half the loops are a second way into a room, the other half a bypass in a corridor
+            if (k % 2 == 0 && rooms.size() > 2) {
+                int r = random.nextInt(rooms.size());
+                int first = nearest(r, rooms.size(), -1);
+                join(rooms.get(r), rooms.get(nearest(r, rooms.size(), first)));
+            } else {
+                bypass();
+            }
+        }
+        for (int k = 0; k < rooms.size() * deadEnds / 100; k++) deadEnd();
+
+        placeCreatures();
+        return board;
+    }
+
+    public Dungeon dungeon() {
+        return new Dungeon(generate());
+    }
+
+    // a game on a newly generated dungeon, with monster A
+    public Game game() {
+        Dungeon dungeon = dungeon();
+        return new Game(dungeon, 'A', dungeon.site(monster[0], monster[1]), dungeon.site(rogue[0], rogue[1]));
+    }
+
+    // writes a newly generated dungeon in the format Game reads
+    public void write(PrintStream out) {
+        generate();
+        StringBuilder s = new StringBuilder();
+        s.append(size).append('\n');
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                char c = board[i][j];
+                if      (i == monster[0] && j == monster[1]) c = 'A';
+                else if (i == rogue[0]   && j == rogue[1])   c = '@';
+                s.append(c).append(' ');
+            }
+            s.append('\n');
+        }
+        out.print(s);
+        out.flush();
+    }
+
+    // Rooms at random, with at least two walls between any two of them
+    private void placeRooms() {
+        long target = (long) (roomDensity * size * size);
+        long area   = 0;
+        int  failed = 0;
+        int  most   = Math.min(MAX_ROOM, size);
+        while (area < target && failed < TRIES) {
+            int height = MIN_ROOM + random.nextInt(most - MIN_ROOM + 1);
+            int width  = MIN_ROOM + random.nextInt(most - MIN_ROOM + 1);
+            int top    = random.nextInt(size - height + 1);
+            int left   = random.nextInt(size - width + 1);
+            if (!isClear(top - 2, left - 2, height + 4, width + 4)) { failed++; continue; }
+
+            for (int i = top; i < top + height; i++)
+                for (int j = left; j < left + width; j++) board[i][j] = '.';
+            rooms.add(new int[] { top, left, height, width });
+            area  += height * width;
+            failed = 0;
+        }
+    }
+
+    private boolean isClear(int top, int left, int height, int width) {
+        for (int i = Math.max(0, top); i < Math.min(size, top + height); i++)
+            for (int j = Math.max(0, left); j < Math.min(size, left + width); j++)
+                if (board[i][j] != ' ') return false;
+        return true;
+    }
+
+    // the room among the first count whose center is closest to room r's, other than r and skip
+    private int nearest(int r, int count, int skip) {
+        int[] a = rooms.get(r);
+        int best = -1;
+        long bestDistance = Long.MAX_VALUE;
+        for (int s = 0; s < count; s++) {
+            if (s == r || s == skip) continue;
+            int[] b = rooms.get(s);
+            long di = (2 * a[0] + a[2]) - (2 * b[0] + b[2]);
+            long dj = (2 * a[1] + a[3]) - (2 * b[1] + b[3]);
+            if (di * di + dj * dj < bestDistance) {
+                best = s;
+                bestDistance = di * di + dj * dj;
+            }
+        }
+        return best;
+    }
+
+    // An L-shaped corridor between random sites of two rooms
+    private void join(int[] a, int[] b) {
+        int i1 = a[0] + random.nextInt(a[2]), j1 = a[1] + random.nextInt(a[3]);
+        int i2 = b[0] + random.nextInt(b[2]), j2 = b[1] + random.nextInt(b[3]);
+        if (random.nextBoolean()) {
+            carveRow(i1, j1, j2);
+            carveColumn(j2, i1, i2);
+        } else {
+            carveColumn(j1, i1, i2);
+            carveRow(i2, j1, j2);
+        }
+    }
+
+    // A side passage that leaves a corridor and comes back to it a little further on
+    private void bypass() {
+        if (corridors.isEmpty()) return;
+        int[] from = corridors.get(random.nextInt(corridors.size()));
+        int   i = from[0], j = from[1];
+        boolean across = (i > 0 && board[i - 1][j] == '+') || (i < size - 1 && board[i + 1][j] == '+');
+        int length = 3 + random.nextInt(4);
+        int side   = random.nextBoolean() ? 2 : -2;
+
+        if (across) {
+            // the corridor runs up and down, so go around it to the left or right
+            int j2 = j + side;
+            if (j2 < 0 || j2 >= size || i + length >= size) return;
+            carveRow(i, j, j2);
+            carveColumn(j2, i, i + length);
+            carveRow(i + length, j2, j);
+        } else {
+            int i2 = i + side;
+            if (i2 < 0 || i2 >= size || j + length >= size) return;
+            carveColumn(j, i, i2);
+            carveRow(i2, j, j + length);
+            carveColumn(j + length, i2, i);
+        }
+    }
+
+    // A corridor wandering off into the walls, away from everything
+    private void deadEnd() {
+        if (corridors.isEmpty()) return;
+        int[] from = corridors.get(random.nextInt(corridors.size()));
+        int   i = from[0], j = from[1];
+        int   length = 2 + random.nextInt(6);
+        for (int step = 0; step < length; step++) {
+            int d  = random.nextInt(4);
+            int i2 = i + (d == 0 ? -1 : d == 1 ? 1 : 0);
+            int j2 = j + (d == 2 ? -1 : d == 3 ? 1 : 0);
+            if (i2 < 0 || j2 < 0 || i2 >= size || j2 >= size || board[i2][j2] != ' ') return;
+            if (openNeighbors(i2, j2) > 1) return;   // it would join up with something
+            carve(i2, j2);
+            i = i2;
+            j = j2;
+        }
+    }
+
+    private int openNeighbors(int i, int j) {
+        int open = 0;
+        if (i > 0        && board[i - 1][j] != ' ') open++;
+        if (i < size - 1 && board[i + 1][j] != ' ') open++;
+        if (j > 0        && board[i][j - 1] != ' ') open++;
+        if (j < size - 1 && board[i][j + 1] != ' ') open++;
+        return open;
+    }
+
+    private void carveRow(int i, int from, int to) {
+        for (int j = Math.min(from, to); j <= Math.max(from, to); j++) carve(i, j);
+    }
+
+    private void carveColumn(int j, int from, int to) {
+        for (int i = Math.min(from, to); i <= Math.max(from, to); i++) carve(i, j);
+    }
+
+    // corridors go through walls; where they cross a room, the room stays a room
+    private void carve(int i, int j) {
+        if (board[i][j] != ' ') return;
+        board[i][j] = '+';
+        corridors.add(new int[] { i, j });
+    }
+
+    // The monster somewhere in the first room, the rogue in the room farthest from it
+    private void placeCreatures() {
+        if (rooms.isEmpty()) {
+            // no room fit, so make a room of one site at either end of a corridor, since
+            // Game reads the site under the monster or rogue back as room
+            board[0][0]               = '.';
+            board[size - 1][size - 1] = '.';
+            carveRow(0, 0, size - 1);
+            carveColumn(size - 1, 0, size - 1);
+            monster = new int[] { 0, 0 };
+            rogue   = new int[] { size - 1, size - 1 };
+            return;
+        }
+
+        int[] first = rooms.get(0);
+        int farthest = 0;
+        long farthestDistance = -1;
+        for (int r = 0; r < rooms.size(); r++) {
+            int[] b = rooms.get(r);
+            long di = b[0] - first[0], dj = b[1] - first[1];
+            if (di * di + dj * dj > farthestDistance) {
+                farthest = r;
+                farthestDistance = di * di + dj * dj;
+            }
+        }
+        int[] last = rooms.get(farthest);
+        monster = new int[] { first[0] + random.nextInt(first[2]), first[1] + random.nextInt(first[3]) };
+        do {
+            rogue = new int[] { last[0] + random.nextInt(last[2]), last[1] + random.nextInt(last[3]) };
+        } while (rogue[0] == monster[0] && rogue[1] == monster[1]);
+    }
+
+    public static void main(String[] args) {
+        int size = Integer.parseInt(args[0]);
+        long seed = 0;
+        double rooms = 0.25;
+        int loops = 20, deadEnds = 20;
+        for (int i = 1; i < args.length; i++) {
+            if      (args[i].equals("-seed"))     seed     = Long.parseLong(args[++i]);
+            else if (args[i].equals("-rooms"))    rooms    = Double.parseDouble(args[++i]);
+            else if (args[i].equals("-loops"))    loops    = Integer.parseInt(args[++i]);
+            else if (args[i].equals("-deadends")) deadEnds = Integer.parseInt(args[++i]);
+        }
+
+        DungeonGenerator generator = new DungeonGenerator(size, seed);
+        generator.setRoomDensity(rooms);
+        generator.setLoops(loops);
+        generator.setDeadEnds(deadEnds);
+        generator.write(System.out);
+    }
+}
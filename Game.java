@@ -1,5 +1,8 @@
 import java.util.Scanner;
 import java.io.File;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
 import java.util.*;
 /*************************************************************************
  *  Compilation:  javac Game.java
@@ -24,12 +27,20 @@ public class Game {
     private final static String NEWLINE = System.getProperty("line.separator");
 
     private Dungeon dungeon;     // the dungeon
+    private GridMap graph;       // legal moves within the dungeon, shared by monster and rogue
+    private DistanceTable distances; // all shortest path lengths, null for large dungeons
+    private RegionGraph regions;     // the way between rooms and corridors, only for large dungeons
+    private Landmarks landmarks;     // distances from a few far off sites, only for large dungeons
+    private CorridorAnalysis corridors; // which corridors lead somewhere
     private char monsterDisp;        // name of the monster (A - Z)
     private static final char ROGUE = '@';    // name of the rogue
     private Site monsterSite;    // location of monster
     private Site rogueSite;      // location of rogue
     private Monster monster;     // the monster
     private JPRogue rogue;         // the rogue
+    private Tablebase tablebase; // solved positions of the dungeon, if there are any
+    private SearchStats monsterStats, rogueStats; // what each one's searches did, move by move
+    private PrintStream statsOut;                 // where the stats go as JSON lines, if anywhere
 
     // initialize board from file
     public Game(Scanner in) {
@@ -46,7 +57,7 @@ public class Game {
                 if (board[i][j] >= 'A' && board[i][j] <= 'Z') {
                     monsterDisp = board[i][j];
                     board[i][j] = '.';
-                    monsterSite = new Site(i, j);
+                    monsterSite = new Site(i, j);   // interned below
                 }
 
                 // check for rogue's location
@@ -56,7 +67,37 @@ public class Game {
                 }
             }
         }
-        dungeon = new Dungeon(board);
+        start(new Dungeon(board), monsterSite, rogueSite, null, null);
+    }
+
+    // start a game in an existing dungeon, with the monster and rogue on the given sites
+    public Game(Dungeon dungeon, char monsterDisp, Site monsterSite, Site rogueSite) {
+        this.monsterDisp = monsterDisp;
+        start(dungeon, monsterSite, rogueSite, null, null);
+    }
+
+    // start a game from a binary dungeon file, using whatever tables it holds as they are
+    public Game(DungeonFile file) {
+        this.monsterDisp = file.getMonsterDisp();
+        start(file.getDungeon(), file.getMonsterSite(), file.getRogueSite(), file.getDistances(), file.getCorridors());
+        if (file.getTablebase() != null) tablebase = Tablebase.wrap(graph, file.getTablebase());
+    }
+
+    // the tables that are given are used as they are, unless the dungeon has been played before
+    private void start(Dungeon dungeon, Site monsterSite, Site rogueSite, 
+                       ShortBuffer knownDistances, ByteBuffer knownCorridors) {
+        // every game in the same dungeon shares one graph and one set of tables
+        GraphRegistry.Entry shared = GraphRegistry.lookup(dungeon, knownDistances, knownCorridors);
+        this.dungeon = shared.getDungeon();
+        graph     = shared.getGraph();
+        distances = shared.getDistances();
+        regions   = shared.getRegions();
+        landmarks = shared.getLandmarks();
+        corridors = shared.getCorridors();
+        this.monsterSite = this.dungeon.intern(monsterSite);
+        this.rogueSite   = this.dungeon.intern(rogueSite);
+        monsterStats = new SearchStats("monster");
+        rogueStats   = new SearchStats("rogue");
         monster = new Monster(this);
         rogue   = new JPRogue(this);
     }
@@ -64,10 +105,40 @@ public class Game {
     // return position of monster and rogue
     public Site getMonsterSite() { return monsterSite; }
 
+    public char getMonsterDisp() { return monsterDisp; }
+
     public Site getRogueSite()   { return rogueSite;   }
 
     public Dungeon getDungeon()  { return dungeon;     }
 
+    public GridMap getGraph()    { return graph;       }
+
+    public DistanceTable getDistances() { return distances; }
+
+    public RegionGraph getRegions() { return regions; }
+
+    public Landmarks getLandmarks() { return landmarks; }
+
+    public CorridorAnalysis getCorridors() { return corridors; }
+
+    public JPRogue getRogue()    { return rogue;       }
+
+    public Tablebase getTablebase()  { return tablebase;   }
+
+    // once set, the monster and rogue look their moves up in the tablebase
+    public void setTablebase(Tablebase tablebase) { this.tablebase = tablebase; }
+
+    public SearchStats getMonsterStats() { return monsterStats; }
+
+    public SearchStats getRogueStats()   { return rogueStats;   }
+
+    // write a JSON line to out for every move, labelled with name, and the totals when play() ends
+    public void setStatsOutput(PrintStream out, String name) {
+        statsOut = out;
+        monsterStats.setOutput(out, name);
+        rogueStats.setOutput(out, name);
+    }
+
     // play until monster catches the rogue
     public void play() {
         Scanner user = new Scanner(System.in);
@@ -77,21 +148,23 @@ public class Game {
 
             // monster moves
             if (monsterSite.equals(rogueSite)) break;
-            Site next = monster.move();
-            if (dungeon.isLegalMove(monsterSite, next)) monsterSite = next;
-            else throw new RuntimeException("Monster caught cheating");
+            moveMonster();
             System.out.println(this);
 
             // rogue moves
             if (monsterSite.equals(rogueSite)) break;
-            next = rogue.move();
-            if (dungeon.isLegalMove(rogueSite, next)) rogueSite = next;
-            else throw new RuntimeException("Rogue caught cheating");
+            moveRogue();
             System.out.println(this);
             user.nextLine();
         }
 
         System.out.println("Caught by monster");
+        rogue.setPondering(false);   // lets the ponder thread go
+        if (statsOut != null) {
+            statsOut.println(monsterStats.summary());
+            statsOut.println(rogueStats.summary());
+            statsOut.flush();
+        }
     }
 
     /*
@@ -101,41 +174,59 @@ public class Game {
      */
     public void moveMonster ()
     {
+        monsterStats.startMove();
         Site next = monster.move();
+        monsterStats.endMove();
         if (dungeon.isLegalMove(monsterSite, next)) monsterSite = next;
         else throw new RuntimeException("Monster caught cheating");
     }
 
     public void moveRogue ()
     {
+        rogueStats.startMove();
         Site next = rogue.move();
+        rogueStats.endMove();
         if (dungeon.isLegalMove(rogueSite, next)) rogueSite = next;
         else throw new RuntimeException("Rogue caught cheating");
     }
-    // string representation of game state (inefficient because of Site and string concat)
+    // string representation of game state
     public String toString() {
-        String s = "";
+        StringBuilder s = new StringBuilder();
         for (int i = 0; i < dungeon.size(); i++) {
             for (int j = 0; j < dungeon.size(); j++) {
-                Site site = new Site(i, j);
-                if (rogueSite.equals(monsterSite) && (rogueSite.equals(site))) s += "* ";
-                else if (rogueSite.equals(site))                               s += ROGUE   + " ";
-                else if (monsterSite.equals(site))                             s += monsterDisp + " ";
-                else if (dungeon.isRoom(site))                                 s += ". ";
-                else if (dungeon.isCorridor(site))                             s += "+ ";
-                else if (dungeon.isWall(site))                                 s += "  ";
+                Site site = dungeon.site(i, j);
+                if (rogueSite.equals(monsterSite) && (rogueSite.equals(site))) s.append("* ");
+                else if (rogueSite.equals(site))                               s.append(ROGUE).append(' ');
+                else if (monsterSite.equals(site))                             s.append(monsterDisp).append(' ');
+                else if (dungeon.isRoom(site))                                 s.append(". ");
+                else if (dungeon.isCorridor(site))                             s.append("+ ");
+                else if (dungeon.isWall(site))                                 s.append("  ");
             }
-            s += NEWLINE;
+            s.append(NEWLINE);
         }
-        return s;
+        return s.toString();
     }
 
     /**
-     * Run by entering a file name for arg[0] in the form dungeonX where X is A..Z
+     * Run by entering a file name for arg[0] in the form dungeonX where X is A..Z,
+     * or the path of a binary dungeon file ending in .rgd (see DungeonFile)
+     * Optionally, arg[1] is how many milliseconds the rogue may think about each move (0 for no limit),
+     * arg[2] a file to write the search stats to, one JSON line per move, and arg[3] "ponder"
+     * to have the rogue go on thinking while the monster moves
      */
     public static void main(String[] args) throws Exception {
-        Scanner stdin = new Scanner(new File("dungeons/" + args[0] + ".txt"));
-        Game game = new Game(stdin);
+        Game game;
+        if (args[0].endsWith(".rgd")) {
+            game = new Game(DungeonFile.read(new File(args[0])));
+        } else {
+            Scanner stdin = new Scanner(new File("dungeons/" + args[0] + ".txt"));
+            game = new Game(stdin);
+            File solved = new File("dungeons/" + args[0] + ".tb");
+            if (solved.exists()) game.setTablebase(Tablebase.load(solved, game.getDungeon(), game.getGraph()));
+        }
+        if (args.length > 1) game.getRogue().setTimeBudget(Long.parseLong(args[1]));
+        if (args.length > 2) game.setStatsOutput(new PrintStream(new File(args[2])), args[0]);
+        if (args.length > 3) game.getRogue().setPondering(args[3].equals("ponder"));
         System.out.println(game);
         game.play();
     }
@@ -5,6 +5,10 @@ import java.util.Queue;
  * interface Graph is an interface for the
  * adt graph containing vertices and edges
  * 
+ * A Graph can only be read, so one graph can be shared by any number of
+ * searches and games running at once. Building a graph up and marking its
+ * vertices is left to MutableGraph; searches keep their own VisitMarks.
+ * 
  * based on: Dale/Joyce/Weems text and Wikipedia entry
  * 
  * @author J. Smith
@@ -29,31 +33,32 @@ public interface Graph<E>
      * @return a Queue of the neighboring vertices 1 edge away from vertex
      */
     public Queue<E> neighbors(E vertex);
+
     /*
-     * add vertex to the graph if the graph is NOT full
+     * index related methods for walking the graph without allocating
+     * Design thought:  neighbors() builds a new Queue on every call, which 
+     * is too slow for searches that visit millions of nodes, so searches 
+     * can instead work with the int index of each vertex.
      */
-    public void addVertex (E vertex);
     /*
-     * add an edge from fromVertex to toVertex
+     * @return the most vertices the graph can hold, every index is below this
      */
-    public void addEdge(E fromVertex, E toVertex);
-    
+    public int capacity();
     /*
-     * mark related methods for managing the graph
-     * Design thought:  the Dale/Joyce/Weems text places responsibility in
-     * the Graph class, but the visited vertex list could be maintained by
-     * a class using the Graph.
+     * @return the index of vertex in this graph, or -1 if it isn't in the graph
      */
+    public int indexOf(E vertex);
     /*
-     * unmark all vertices in the graph
+     * @return the vertex with the given index
      */
-    public void clearMarks ();
+    public E vertexAt(int index);
     /*
-     * @return true if vertex is marked, false otherwise
+     * @return the number of neighboring vertices 1 edge away from the vertex at index
      */
-    public boolean isMarked(E vertex);
+    public int degree(int index);
     /*
-     * mark vertex
+     * @return the index of the k-th neighbor of the vertex at index, 0 <= k < degree(index)
+     *         neighbors are numbered in the same order neighbors() returns them
      */
-    public void mark (E vertex);
+    public int neighbor(int index, int k);
 }
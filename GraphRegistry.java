@@ -0,0 +1,113 @@
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+/**
+ * The graph of a dungeon, and the tables worked out from it, built once
+ * and shared by every game played in that dungeon.
+ *
+ * Dungeons with the same cells share an Entry, however they were loaded,
+ * so a tournament running hundreds of games at once in a few dungeons
+ * only ever holds a few graphs. Everything in an Entry is left alone once
+ * it is built, so any number of threads can read it without locking; the
+ * searches keep whatever they change (marks, caches, tables of positions)
+ * to themselves.
+ *
+ * The first game to ask for a dungeon builds its entry while any others
+ * asking for it at the same time wait, so nothing is built twice. Entries
+ * stay until clear() is called.
+ */
+public class GraphRegistry {
+    private static final ConcurrentHashMap<Dungeon, FutureTask<Entry>> entries =
+        new ConcurrentHashMap<Dungeon, FutureTask<Entry>>();
+
+    // Everything about a dungeon that doesn't depend on where the monster and rogue are
+    public static class Entry {
+        private final Dungeon          dungeon;
+        private final GridMap          graph;
+        private final DistanceTable    distances;   // null for large dungeons
+        private final RegionGraph      regions;     // only for large dungeons
+        private final Landmarks        landmarks;   // only for large dungeons
+        private final CorridorAnalysis corridors;
+
+        private Entry(Dungeon dungeon, ShortBuffer knownDistances, ByteBuffer knownCorridors) {
+            this.dungeon = dungeon;
+            graph = new GridMap(dungeon);
+            if(knownDistances != null)
+                distances = new DistanceTable(graph, knownDistances);
+            else if(DistanceTable.openSites(graph) <= DistanceTable.MAX_SITES)
+                distances = new DistanceTable(graph);
+            else
+                distances = null;
+            regions   = (distances == null) ? new RegionGraph(dungeon, graph) : null;
+            landmarks = (distances == null) ? new Landmarks(graph) : null;
+            corridors = (knownCorridors != null) ? new CorridorAnalysis(graph, knownCorridors)
+                                                 : new CorridorAnalysis(dungeon, graph);
+        }
+
+        // the dungeon the graph was built from; its sites are the graph's vertices
+        public Dungeon getDungeon()            { return dungeon;   }
+
+        public GridMap getGraph()              { return graph;     }
+
+        public DistanceTable getDistances()    { return distances; }
+
+        public RegionGraph getRegions()        { return regions;   }
+
+        public Landmarks getLandmarks()        { return landmarks; }
+
+        public CorridorAnalysis getCorridors() { return corridors; }
+    }
+
+    private GraphRegistry() { }
+
+    public static Entry lookup(Dungeon dungeon) {
+        return lookup(dungeon, null, null);
+    }
+
+    /*
+     * The entry for dungeon, built now if no game has played it yet. The tables that
+     * are given are used as they are if it does get built, the others are worked out.
+     */
+    public static Entry lookup(final Dungeon dungeon, final ShortBuffer knownDistances,
+                               final ByteBuffer knownCorridors) {
+        FutureTask<Entry> task = entries.get(dungeon);
+        if(task == null) {
+            FutureTask<Entry> build = new FutureTask<Entry>(new Callable<Entry>() {
+                public Entry call() {
+                    return new Entry(dungeon, knownDistances, knownCorridors);
+                }
+            });
+            task = entries.putIfAbsent(dungeon, build);
+            if(task == null) {
+                task = build;
+                build.run();
+            }
+        }
+
+        try {
+            return task.get();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted waiting for the graph of a dungeon", e);
+        } catch(ExecutionException e) {
+            entries.remove(dungeon, task);   // let the next game try again
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if(cause instanceof Error)            throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    // how many dungeons have an entry
+    public static int size() {
+        return entries.size();
+    }
+
+    // forgets every entry; games already running keep theirs
+    public static void clear() {
+        entries.clear();
+    }
+}
@@ -0,0 +1,108 @@
+import java.util.Queue;
+import java.util.LinkedList;
+/**
+ * An implementation of a Graph of Sites laid out on a square grid.
+ * 
+ * Since a site can only be connected to the sites in the 3x3 block around it
+ * (itself included, the dungeon allows staying in place), every vertex keeps
+ * its neighbors in a fixed-stride slice of a single int array. Memory grows
+ * linearly with the number of cells, rather than quadratically like JPMap.
+ * 
+ * Neighbors are kept sorted by index, so they come back in the same row-major
+ * order JPMap returns them in.
+ * 
+ * Once built, a GridMap never changes, so it is safe to share between threads;
+ * GraphRegistry hands the same one to every game played in the same dungeon.
+ */
+public class GridMap implements Graph<Site> {
+    // At most 8 surrounding sites plus the site itself
+    private static final int STRIDE = 9;
+
+    private final int size;       // width and height of the grid
+    private final int capacity;   // size * size
+    private final int count;
+
+    private final Site[] vertices;
+    private final int[]  edges;   // STRIDE slots per vertex, sorted by index
+    private final byte[] degree;
+
+    /*
+     * Builds the graph of legal moves within dungeon. The dungeon already knows
+     * the legal moves out of each site, in row-major order, so they can be copied
+     * straight into each slice and building the graph is linear in the number of sites.
+     */
+    public GridMap(Dungeon dungeon) {
+        this.size     = dungeon.size();
+        this.capacity = size * size;
+        this.count    = capacity;
+        this.vertices = new Site[capacity];
+        this.edges    = new int[capacity * STRIDE];
+        this.degree   = new byte[capacity];
+
+        for(int k = 0; k < capacity; k += 1)
+            vertices[k] = dungeon.site(k);
+
+        for(int k = 0; k < capacity; k += 1) {
+            int moves = dungeon.moves(k);
+            for(int d = 0; d < STRIDE; d += 1) {
+                if((moves & (1 << d)) == 0) continue;
+                edges[k * STRIDE + degree[k]] = k + (d / 3 - 1) * size + (d % 3 - 1);
+                degree[k] += 1;
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public boolean isFull() {
+        return count == capacity;
+    }
+
+    public boolean hasVertex(Site vertex) {
+        return indexOf(vertex) != -1;
+    }
+
+    public Queue<Site> neighbors(Site vertex) {
+        LinkedList<Site> neighbors = new LinkedList<Site>();
+        int k = indexOf(vertex);
+
+        for(int i = k * STRIDE; i < k * STRIDE + degree[k]; i += 1)
+            neighbors.add(vertices[edges[i]]);
+        return neighbors;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int indexOf(Site vertex) {
+        int k = cellOf(vertex);
+        return (k != -1 && vertices[k] != null) ? k : -1;
+    }
+
+    public Site vertexAt(int index) {
+        return vertices[index];
+    }
+
+    public int degree(int index) {
+        return degree[index];
+    }
+
+    public int neighbor(int index, int k) {
+        return edges[index * STRIDE + k];
+    }
+
+    // Index of a site within the grid, or -1 if it lies outside of it
+    private int cellOf(Site vertex) {
+        // Interned sites already know their index
+        int k = vertex.id();
+        if(k >= 0 && k < capacity && vertices[k] == vertex) return k;
+
+        int i = vertex.row();
+        int j = vertex.col();
+        if (i < 0 || j < 0 || i >= size || j >= size) return -1;
+        return i * size + j;
+    }
+}
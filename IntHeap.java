@@ -0,0 +1,81 @@
+/**
+ * A binary min-heap of ints, each with an int priority, kept in two plain
+ * arrays so that pushing and popping allocate nothing once the heap has
+ * grown to size.
+ *
+ * There is no decrease-key: a search that finds a shorter way to an item
+ * pushes it again, and skips the stale copy when it comes out.
+ */
+public class IntHeap {
+    private int[] items;
+    private int[] priorities;
+    private int   size;
+
+    public IntHeap(int capacity) {
+        items      = new int[Math.max(1, capacity)];
+        priorities = new int[items.length];
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void push(int item, int priority) {
+        if(size == items.length) {
+            items      = java.util.Arrays.copyOf(items, 2 * size);
+            priorities = java.util.Arrays.copyOf(priorities, 2 * size);
+        }
+
+        // Sift up, moving parents down until there's a place for the new item
+        int i = size;
+        size += 1;
+        while(i > 0) {
+            int parent = (i - 1) >>> 1;
+            if(priorities[parent] <= priority) break;
+            items[i]      = items[parent];
+            priorities[i] = priorities[parent];
+            i = parent;
+        }
+        items[i]      = item;
+        priorities[i] = priority;
+    }
+
+    // the priority of the item pop() would return
+    public int peekPriority() {
+        return priorities[0];
+    }
+
+    /*
+     * Removes the item with the lowest priority
+     * @return the item
+     */
+    public int pop() {
+        int top = items[0];
+        size -= 1;
+        int item     = items[size];
+        int priority = priorities[size];
+
+        // Sift the last item down from the root
+        int i = 0;
+        while(true) {
+            int child = 2 * i + 1;
+            if(child >= size) break;
+            if(child + 1 < size && priorities[child + 1] < priorities[child]) child += 1;
+            if(priorities[child] >= priority) break;
+            items[i]      = items[child];
+            priorities[i] = priorities[child];
+            i = child;
+        }
+        items[i]      = item;
+        priorities[i] = priority;
+        return top;
+    }
+}
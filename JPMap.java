@@ -1,7 +1,6 @@
 import java.util.Queue;
 import java.util.LinkedList;
 import java.util.HashMap;
-import java.util.HashSet;
 /**
  * An implementation of a Graph using both HashMaps and
  * a double array list to store indices and edges between nodes.
@@ -9,7 +8,7 @@ import java.util.HashSet;
  * @author Jay Palekar
  * @version 6/4/12
  */
-public class JPMap<E> implements Graph<E> {
+public class JPMap<E> implements MutableGraph<E> {
     private int capacity = 0;
     private int size = 0;
 
@@ -19,14 +18,14 @@ public class JPMap<E> implements Graph<E> {
     private HashMap<Integer, E> vertices;
 
     private final int[][] data;
-    private HashSet<E> marked;
+    private final VisitMarks marked;
 
     @SuppressWarnings({"unchecked"})
     public JPMap(int capacity) {
         this.capacity = capacity;
         this.vertices = new HashMap<Integer, E>(capacity);
         this.verticesIndices = new HashMap<E, Integer>(capacity);
-        this.marked = new HashSet<E>();
+        this.marked = new VisitMarks(capacity);
         this.data = new int[capacity][capacity];
     }
 
@@ -57,6 +56,38 @@ public class JPMap<E> implements Graph<E> {
         return neighbors;
     }
 
+    public int capacity() {
+        return capacity;
+    }
+
+    public int indexOf(E vertex) {
+        Integer k = verticesIndices.get(vertex);
+        return k == null ? -1 : k;
+    }
+
+    public E vertexAt(int index) {
+        return vertices.get(index);
+    }
+
+    public int degree(int index) {
+        int d = 0;
+        for(int i = 0; i < size; i += 1) {
+            if(data[index][i] > 0) d += 1;
+        }
+        return d;
+    }
+
+    public int neighbor(int index, int k) {
+        int left = k;   // neighbors still to skip
+        for(int i = 0; i < size; i += 1) {
+            if(data[index][i] > 0) {
+                if(left == 0) return i;
+                left -= 1;
+            }
+        }
+        throw new IndexOutOfBoundsException("Neighbor " + k + " of " + vertices.get(index));
+    }
+
     public void addVertex(E vertex) {
         verticesIndices.put(vertex, size);
         vertices.put(size, vertex);
@@ -73,13 +104,14 @@ public class JPMap<E> implements Graph<E> {
     }
 
     public void clearMarks() {
-        this.marked = new HashSet<E>();
+        marked.clear();
     }
     public boolean isMarked(E vertex) {
-        return marked.contains(vertex);
+        Integer index = verticesIndices.get(vertex);
+        return index != null && marked.isMarked(index);
     }
 
     public void mark(E vertex) {
-        marked.add(vertex);
+        marked.mark(verticesIndices.get(vertex));
     }
 }
@@ -1,6 +1,13 @@
 import java.util.ArrayList;
-import java.util.Queue;
-import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
 
 import java.util.HashSet;
 /*************************************************************************
@@ -21,13 +28,65 @@ public class JPRogue implements Creature{
     private Game game;
     private Dungeon dungeon;
     private Graph<Site> map;
+    private TranspositionTable table;
+    private DistanceTable distances;
+    private BitBfs bfs;            // instead of the distance table, for large dungeons
+    private int[] field;
+    private SearchStats stats;
 
     /* Within corridors and rooms, the number of neighbors per site drops,
     *  so we can look more levels deep without a performance hit, improving
     *  decision making.
     */
-    private static final int ROOM_DEPTH = 6;
-    private static final int CORRIDOR_DEPTH = 8;
+    private static final int ROOM_DEPTH = 8;
+    private static final int CORRIDOR_DEPTH = 10;
+
+    // 2^18 entries in the transposition table
+    private static final int TABLE_BITS = 18;
+
+    /* When given a budget, the rogue deepens its search two levels at a time until
+    *  the budget runs out, so the time per move no longer depends on how open the
+    *  board is. A budget of 0 means no limit, and the fixed depths above are used.
+    */
+    private static final int MAX_DEPTH = 100;
+    private static final int CHECK_EVERY = 1024;   // nodes between looks at the clock
+    private long timeBudget = 0;                   // nanoseconds per move
+    private long nodeBudget = 0;                   // nodes per move
+
+    private long             deadline;
+    private AtomicLong       nodes = new AtomicLong();
+    private volatile boolean canStop;
+    private volatile boolean stopped;
+
+    /* Alpha-beta cuts off sooner the earlier it meets the best move, so the moves at
+    *  each node are tried best guess first: the move the table remembers as best,
+    *  then the two killer moves of the depth (moves that recently caused a cutoff in
+    *  a sibling position), then by history (how often and how deep a move to that
+    *  site has caused cutoffs), and finally the rogue's moves away from the monster
+    *  and the monster's towards the rogue. Like the table, the history is shared by
+    *  the threads; an update lost to another thread just orders moves a little worse.
+    */
+    private static final int HISTORY_MAX = 1 << 30;
+    private static final int FAR         = (1 << 24) - 1;   // distances above this sort alike
+    private int[] history;                          // rogue's sites, then monster's
+
+    /* With pondering on, the rogue goes on thinking while the monster decides on its 
+    *  move. Once the rogue has picked its move, a background thread searches the
+    *  positions the monster's replies lead to, the likeliest reply first, exactly as
+    *  the next call to move() would, filling the transposition table. move() stops it
+    *  and then searches as usual, finding most of its answers already in the table.
+    *  Like searching on several threads, this makes the choice of move depend on
+    *  timing, since how far the ponderer got changes what the table holds.
+    */
+    private ExecutorService  ponderer;        // a single daemon thread, while pondering is on
+    private Future<?>        ponderTask;
+    private volatile boolean stopPondering;
+
+    /* The moves available at the root can be searched on several threads at once, 
+    *  all sharing the transposition table. With a single thread, the moves are
+    *  searched one after another on the calling thread, so games replay exactly.
+    */
+    private ForkJoinPool pool;
     
     private ArrayList<Site> corridorStarts;
     //private ArrayList<ArrayList<Site>> corridorLoops = new ArrayList<ArrayList<Site>>();
@@ -36,6 +95,21 @@ public class JPRogue implements Creature{
     private HashSet<Site> viableCorridors    = new HashSet<Site>();
     private HashSet<Site> inLoop             = new HashSet<Site>();
 
+    /* The sets above are only used to set things up. What they say about each site is
+    *  then boiled down to one kind per site, by index, so that scoring a position at
+    *  the bottom of the search takes a couple of array lookups and no hashing. A site
+    *  of a given kind scores WEIGHT * (distance to the monster - OFFSET).
+    */
+    private static final byte OTHER    = 0;
+    private static final byte LOOP     = 1;   // corridors that loop back on themselves
+    private static final byte SAFE     = 2;   // corridor starts with somewhere to run to
+    private static final byte VIABLE   = 3;   // corridors on the way to somewhere
+    private static final byte ROOM     = 4;   // rooms, never worth ending up in
+    private static final byte DEAD_END = 5;   // corridors leading nowhere, cut off before scoring
+    private static final int[] WEIGHT  = { 0, 1000, 500, 250, 0, 0 };
+    private static final int[] OFFSET  = { 0,    1,   1,   0, 0, 0 };
+    private byte[] kind;
+
     /*
      *  Constructor for the Rogue
      *  Tasks handled: 
@@ -48,33 +122,45 @@ public class JPRogue implements Creature{
     public JPRogue(Game game) {
         this.game    = game;
         this.dungeon = game.getDungeon();
-        this.map   = new JPMap<Site>(dungeon.size() * dungeon.size());
-
-        // Initialize Graph
-        Site[] added = new Site[dungeon.size() * dungeon.size()];
-        for(int i = 0; i < dungeon.size(); i += 1)
-            for(int j = 0; j < dungeon.size(); j += 1) {
-                Site s = new Site(i, j);
-                map.addVertex(s);
-                added[i * dungeon.size() + j] = s;
+        this.map     = game.getGraph();
+        this.distances = game.getDistances();
+        this.stats   = game.getRogueStats();
+        this.table   = new TranspositionTable(dungeon.size() * dungeon.size(), TABLE_BITS);
+        this.history = new int[2 * dungeon.size() * dungeon.size()];
+        if(distances == null) {
+            bfs   = new BitBfs(dungeon);
+            field = new int[dungeon.size() * dungeon.size()];
         }
 
-        for(int i = 0; i < dungeon.size() * dungeon.size(); i += 1)
-            for(int j = 0; j < dungeon.size() * dungeon.size(); j += 1) {
-                if(dungeon.isLegalMove(added[i], added[j]))
-                    map.addEdge(added[i], added[j]);
-        }
+        Site[] added = new Site[dungeon.size() * dungeon.size()];
+        for(int i = 0; i < added.length; i += 1)
+            added[i] = map.vertexAt(i);
 
         // Gather information about the graph
         findCorridors(added);
-        System.out.println(viableCorridors);
-        
     }
 
     public Site move() {
-        Site monster = game.getMonsterSite();
-        Site rogue   = game.getRogueSite();
-        Site move    = null;
+        return move(game.getRogueSite(), game.getMonsterSite());
+    }
+
+    /*
+     * @return the move the rogue would make from rogue, with the monster on monster
+     */
+    public Site move(Site rogue, Site monster) {
+        // When the dungeon has been solved ahead of time, there's nothing left to think about
+        if(game.getTablebase() != null)
+            return game.getTablebase().bestRogueMove(rogue, monster);
+
+        stopPondering();
+        Site next = think(rogue, monster);
+        if(ponderer != null) startPondering(next, monster);
+        return next;
+    }
+
+    // The search itself, with the game's table and budget
+    private Site think(Site rogue, Site monster) {
+
 
         // Generate the set of all possible single turn moves for Rogue
         ArrayList<Site> moves = new ArrayList<Site>(map.neighbors(rogue));
@@ -85,21 +171,53 @@ public class JPRogue implements Creature{
         double maxValue = Double.MIN_VALUE;
         // Fix a slowdown issue within room, by allowing different searching depths
         int    depth = dungeon.isRoom(rogue) ? ROOM_DEPTH : CORRIDOR_DEPTH;
-        for(int i = 0; i < moves.size(); i += 1) {
-            double val = minimax(moves.get(i), monster, Double.MIN_VALUE, Double.MAX_VALUE, depth); // depth must be even
-            if(val >= maxValue) {
-                maxValue = val;
-                maxIndex = i;
+        int    m     = map.indexOf(monster);
+        table.newSearch();
+        for(int i = 0; i < history.length; i += 1) history[i] >>= 1;   // older cutoffs count for less
+
+        // With a budget, search as deep as it allows, starting shallow. The order the
+        // moves are searched in comes from the previous iteration, best first.
+        boolean budgeted = (timeBudget > 0 || nodeBudget > 0);
+        int[]    order   = new int[moves.size()];
+        double[] values  = new double[moves.size()];
+        for(int i = 0; i < order.length; i += 1) order[i] = i;
+
+        deadline = System.nanoTime() + timeBudget;
+        nodes.set(0);
+        canStop  = false;
+        stopped  = false;
+        for(int d = budgeted ? 2 : depth; d <= (budgeted ? MAX_DEPTH : depth); d += 2) { // depth must be even
+            searchRoot(moves, m, d, order, values);
+            if(stopped) break;   // only fully searched depths count
+
+            int    bestIndex = 0;
+            double bestValue = Double.MIN_VALUE;
+            for(int i = 0; i < moves.size(); i += 1) {
+                if(values[i] >= bestValue) {
+                    bestValue = values[i];
+                    bestIndex = i;
+                }
             }
+
+            maxIndex = bestIndex;
+            maxValue = bestValue;
+            canStop  = true;     // there is now a move to fall back on
+            stats.reached(d);
+            sortByValue(order, values);
         }
-        
+
         // A special case where when the rogue realizes it can't win it just sits still,
         // to counteract this, it'll try the move that's farthest from the monster.
+        // Without a distance table, a single search from the monster measures every site.
         if(maxValue == Double.MIN_VALUE) {
+            int[] away = (bfs != null) ? bfs.distances(m, field) : null;
             Site farthest = rogue;
             int distance = 0;
             for(Site neigh : map.neighbors(rogue)) {
-                int d2 = neigh.manhattanTo(monster);
+                int n  = map.indexOf(neigh);
+                int d2 = (away == null)                      ? distance(n, m) 
+                       : (away[n] == BitBfs.UNREACHABLE)     ? map.capacity() 
+                       :                                       away[n];
                 if(d2 >= distance) {
                     farthest = neigh;
                     distance = d2;
@@ -111,73 +229,438 @@ public class JPRogue implements Creature{
         return moves.get(maxIndex);
     } 
 
-    /**
-     *  Implementation of the minimax decision making algorithm.
-     *  Algorithm begins by generating a tree, (the tree is embedded by our recursion) 
-     *  then going through each level searching for the choice that would most likely be
-     *  made by each player, until determining the best move for the player using it.
-     *  
-     *  Within the code, I used Alpha-Beta pruning which prevents us from evaluating any
-     *  node whose values will never be applicable and thus gives us huge (45-50%) speed ups.
+    /*
+     * Empties the transposition table and the history, so the next evaluate() starts
+     * from nothing. Kept apart so the benchmarks in bench/ can leave it out of the timing.
      */
-    private double minimax(Site rogue, Site monster, double alpha, double beta, int depth) {
-        /*
-         * The following two blocks of code are to prevent possible fallings 
-         * wherein the rogue tries to pass within close distance of the monster
-         * on it's way to whatever it's target. I could put them in the scoring method,
-         * but it speeds things up to terminate the tree early on.
-         */
-        for(Site neigh : map.neighbors(monster)) {
-            if(rogue.equals(neigh)) return Double.MIN_VALUE;
+    void resetSearch() {
+        stopPondering();
+        table.clear();
+        java.util.Arrays.fill(history, 0);
+        canStop = false;
+        stopped = false;
+    }
+
+    /*
+     * @return the minimax value of the position with the rogue to move, searched to the given 
+     *         depth from whatever the table and history hold. Used by the benchmarks in bench/.
+     */
+    double evaluate(Site rogue, Site monster, int depth) {
+        return new Searcher().minimax(map.indexOf(rogue), map.indexOf(monster), 
+                                      Double.MIN_VALUE, Double.MAX_VALUE, depth);
+    }
+
+    /*
+     * Sets how long the rogue may think about each move, in milliseconds. 0 for no limit.
+     */
+    public void setTimeBudget(long millis) {
+        timeBudget = millis * 1000000;
+    }
+
+    /*
+     * Sets how many positions the rogue may look at for each move. 0 for no limit.
+     */
+    public void setNodeBudget(long nodes) {
+        nodeBudget = nodes;
+    }
+
+    /*
+     * Turns pondering on or off. Off by default. Turning it on starts a thread that
+     * lasts until it is turned off again, so turn it off once the game is over.
+     */
+    public void setPondering(boolean on) {
+        if(on && ponderer == null) {
+            ponderer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable task) {
+                    Thread thread = new Thread(task, "rogue-ponder");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        } else if(!on && ponderer != null) {
+            stopPondering();
+            ponderer.shutdown();
+            ponderer = null;
         }
+    }
 
-        if(dungeon.isCorridor(rogue) && !viableCorridors.contains(rogue))
-            return Double.MIN_VALUE;
+    /*
+     * Stops the search running while the monster moves, if there is one, and waits
+     * for it to finish. The thread it ran on stays, for the next one.
+     */
+    public void stopPondering() {
+        if(ponderTask == null) return;
+        stopPondering = true;
+        try {
+            ponderTask.get();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch(ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        ponderTask = null;
+    }
 
-        /*
-         * If we have reached a terminal node in our tree, then the value of the move 
-         * can't be determined, so we instead use an heuristic algorithm to judge the board.
-         */
-        if(depth <= 0) {
-            return score(rogue, monster);
+    // Starts searching the positions the monster's replies lead to, with the rogue on rogue
+    private void startPondering(Site rogue, Site monster) {
+        final int     r        = map.indexOf(rogue);
+        final int     m        = map.indexOf(monster);
+        final int     depth    = dungeon.isRoom(rogue) ? ROOM_DEPTH : CORRIDOR_DEPTH;
+        final boolean budgeted = (timeBudget > 0 || nodeBudget > 0);
+
+        stopPondering = false;
+        ponderTask = ponderer.submit(new Runnable() {
+            public void run() {
+                ponder(r, m, depth, budgeted);
+            }
+        });
+    }
+
+    /*
+     * Searches each move of the rogue on r against each reply of the monster on m, to
+     * the depth move() will use, or deeper and deeper with a budget, until stopped.
+     */
+    private void ponder(int r, int m, int depth, boolean budgeted) {
+        // The monster heads for the rogue, so the replies closest to it come first
+        int[] replies = new int[map.degree(m)];
+        int   count   = 0;
+        for(int k = 0; k < map.degree(m); k += 1) {
+            int reply = map.neighbor(m, k);
+            if(reply == r) continue;    // caught, nothing left to think about
+            int j = count;
+            while(j > 0 && distance(replies[j - 1], r) > distance(reply, r)) {
+                replies[j] = replies[j - 1];
+                j -= 1;
+            }
+            replies[j] = reply;
+            count += 1;
         }
 
-        /* We'll consider our rogue to be our maximizing player, meaning that it 
-         *  tries to get the maximum possible heuristic value when it makes a move.
-         *  Since, according to the minimax theorem, if a player's best strategy is V, 
-         *  then it's opponents best strategy is -V, Monster is trying to select the move 
-         *  which generates the least possible value for the rogue, making it the 
-         *  minimizing player.
+        Searcher searcher = new Searcher(true);
+        for(int d = budgeted ? 2 : depth; d <= (budgeted ? MAX_DEPTH : depth); d += 2) {
+            for(int i = 0; i < count; i += 1) {
+                for(int k = 0; k < map.degree(r); k += 1) {
+                    searcher.minimax(map.neighbor(r, k), replies[i], Double.MIN_VALUE, Double.MAX_VALUE, d);
+                    if(stopPondering) return;
+                }
+            }
+        }
+    }
+
+    /*
+     * Sets how many threads search each move. More than one makes the choice of move
+     * depend on timing, since the threads share what they find through the table.
+     */
+    public void setThreads(int threads) {
+        if(pool != null) pool.shutdown();
+        pool = (threads > 1) ? new ForkJoinPool(threads) : null;
+    }
+
+    /*
+     * Searches each of the moves to the given depth, in order, storing their
+     * values in values. Spread over the pool when there is one.
+     */
+    private void searchRoot(List<Site> moves, int monster, int depth, int[] order, double[] values) {
+        if(pool == null) {
+            Searcher searcher = new Searcher();
+            for(int i : order) {
+                values[i] = searcher.minimax(map.indexOf(moves.get(i)), monster, 
+                                             Double.MIN_VALUE, Double.MAX_VALUE, depth);
+                if(stopped) break;
+            }
+            searcher.report();
+            return;
+        }
+
+        List<Callable<Double>> tasks = new ArrayList<Callable<Double>>();
+        for(int i : order) {
+            tasks.add(new RootMove(map.indexOf(moves.get(i)), monster, depth));
+        }
+        try {
+            List<Future<Double>> results = pool.invokeAll(tasks);
+            for(int k = 0; k < order.length; k += 1)
+                values[order[k]] = results.get(k).get();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopped = true;
+        } catch(ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    // One move at the root, searched on a thread of the pool
+    private class RootMove implements Callable<Double> {
+        private final int rogue, monster, depth;
+
+        RootMove(int rogue, int monster, int depth) {
+            this.rogue   = rogue;
+            this.monster = monster;
+            this.depth   = depth;
+        }
+
+        public Double call() {
+            Searcher searcher = new Searcher();
+            double value = searcher.minimax(rogue, monster, Double.MIN_VALUE, Double.MAX_VALUE, depth);
+            searcher.report();
+            return value;
+        }
+    }
+
+    // Insertion sort of the move indices in order, by decreasing value
+    private void sortByValue(int[] order, double[] values) {
+        for(int i = 1; i < order.length; i += 1) {
+            int k = order[i];
+            int j = i;
+            while(j > 0 && values[order[j - 1]] < values[k]) {
+                order[j] = order[j - 1];
+                j -= 1;
+            }
+            order[j] = k;
+        }
+    }
+
+    /*
+     * The state of one thread searching for the rogue. Apart from the shared transposition 
+     * table and the budget, everything a search writes to lives here, so that several 
+     * searches can run at once.
+     */
+    private class Searcher {
+        private final boolean pondering;      // searching on the monster's time, until told to stop
+        private long nodes = 0;
+        private long cutoffs, firstCutoffs, probes, hits;   // for the stats, handed over by report()
+        private TranspositionTable.Entry entry = new TranspositionTable.Entry();
+
+        // By depth left: the moves of the node being searched, in order, and two killers
+        private int[][]  children = new int[0][];
+        private long[][] ranks    = new long[0][];
+        private int[]    killers  = new int[0];
+
+        Searcher() {
+            this(false);
+        }
+
+        Searcher(boolean pondering) {
+            this.pondering = pondering;
+        }
+
+        private void report() {
+            stats.count(nodes, cutoffs, firstCutoffs, probes, hits);
+        }
+
+        // whether the search has been told to stop
+        private boolean halted() {
+            return pondering ? stopPondering : stopped;
+        }
+
+        // Checks, every so often, whether the budget for this move has run out
+        private boolean outOfBudget() {
+            nodes += 1;
+            if(pondering) return stopPondering;
+            if(!canStop || nodes % CHECK_EVERY != 0) return false;
+            long searched = JPRogue.this.nodes.addAndGet(CHECK_EVERY);
+            if(nodeBudget > 0 && searched >= nodeBudget)           stopped = true;
+            if(timeBudget > 0 && System.nanoTime() - deadline > 0) stopped = true;
+            return stopped;
+        }
+
+        /**
+         *  Implementation of the minimax decision making algorithm.
+         *  Algorithm begins by generating a tree, (the tree is embedded by our recursion) 
+         *  then going through each level searching for the choice that would most likely be
+         *  made by each player, until determining the best move for the player using it.
+         *  
+         *  Within the code, I used Alpha-Beta pruning which prevents us from evaluating any
+         *  node whose values will never be applicable and thus gives us huge (45-50%) speed ups.
          *  
-         *  In essence, each possible sub-move is checked, and the best one for each player is 
-         *  chosen and set as the that would happen for this turn. The turn before this is set 
-         *  according to the value chosen here.
+         *  Sites are passed around as their index in the map, and neighbors are walked by 
+         *  index, so that the search doesn't allocate anything on the way down. The map is
+         *  laid out like the dungeon, so the index is also the site's id in the dungeon.
          *  
-         *  Alpha and beta represent minimum "barriers" which prevent unnecessary evaluation of
-         *  code. Technically, they represent the value, V, for the rogue and monster respectively.
+         *  If the budget for the move runs out, the search unwinds straight away; its value
+         *  is then meaningless and isn't stored anywhere.
          */
-        if(depth % 2 == 0) {
-            Queue<Site> neighbors = map.neighbors(rogue);
-            neighbors.add(rogue); // Allow for no move to be made
+        double minimax(int rogue, int monster, double alpha, double beta, int depth) {
+            if(halted() || outOfBudget()) return 0;
 
-            for(Site neigh : neighbors) {
-                alpha = Math.max(alpha, minimax(neigh, monster, alpha, beta, depth - 1));
-                if(beta <= alpha) return beta;
+            /*
+             * The following two blocks of code are to prevent possible fallings 
+             * wherein the rogue tries to pass within close distance of the monster
+             * on it's way to whatever it's target. I could put them in the scoring method,
+             * but it speeds things up to terminate the tree early on.
+             */
+            for(int k = 0; k < map.degree(monster); k += 1) {
+                if(map.neighbor(monster, k) == rogue) return Double.MIN_VALUE;
             }
 
-            return alpha;
-        } else {
-            Queue<Site> neighbors = map.neighbors(monster);
-            neighbors.add(monster);
+            if(kind[rogue] == DEAD_END)
+                return Double.MIN_VALUE;
 
-            beta = Double.MAX_VALUE;
+            /*
+             * If we have reached a terminal node in our tree, then the value of the move 
+             * can't be determined, so we instead use an heuristic algorithm to judge the board.
+             */
+            if(depth <= 0) {
+                return score(rogue, monster);
+            }
 
-            for(Site neigh : neighbors) {
-                beta = Math.min(beta, minimax(rogue, neigh, alpha, beta, depth - 1));
-                if(beta <= alpha) return beta;
+            /*
+             * The same position is often reached through different orders of moves, so check
+             * whether it has already been searched at least this deep. The returned values are
+             * clamped the same way the search below would clamp them. What earlier moves left
+             * behind is only used at the depth it was searched to: deeper values from an earlier
+             * move depend on the order the moves happened to be tried in back then, and would
+             * make the rogue's choice depend on it too.
+             */
+            boolean rogueToMove = (depth % 2 == 0);
+            long    key = table.key(rogue, monster, rogueToMove);
+            probes += 1;
+            boolean found = table.probe(key, entry);
+            if(found && (entry.depth() == depth || (entry.depth() > depth && entry.isCurrent()))) {
+                hits += 1;
+                double value = entry.value();
+                byte   bound = entry.bound();
+                if(rogueToMove) {
+                    if(bound != TranspositionTable.UPPER && value >= beta)  return beta;
+                    if(bound != TranspositionTable.LOWER && value <= alpha) return alpha;
+                    if(bound == TranspositionTable.EXACT)                   return value;
+                } else {
+                    if(bound != TranspositionTable.LOWER && value <= alpha) return value;
+                    if(bound == TranspositionTable.EXACT)                   return value;
+                }
             }
 
-            return beta;
+            /* We'll consider our rogue to be our maximizing player, meaning that it 
+             *  tries to get the maximum possible heuristic value when it makes a move.
+             *  Since, according to the minimax theorem, if a player's best strategy is V, 
+             *  then it's opponents best strategy is -V, Monster is trying to select the move 
+             *  which generates the least possible value for the rogue, making it the 
+             *  minimizing player.
+             *  
+             *  In essence, each possible sub-move is checked, and the best one for each player is 
+             *  chosen and set as the that would happen for this turn. The turn before this is set 
+             *  according to the value chosen here.
+             *  
+             *  Alpha and beta represent minimum "barriers" which prevent unnecessary evaluation of
+             *  code. Technically, they represent the value, V, for the rogue and monster respectively.
+             */
+            int   hashMove = found ? entry.move() : -1;
+            int   count    = orderMoves(rogueToMove ? rogue : monster, rogueToMove ? monster : rogue,
+                                        rogueToMove, hashMove, depth);
+            int[] moves    = children[depth];
+            int   best     = -1;
+
+            if(rogueToMove) {
+                double alphaStart = alpha;
+
+                for(int i = 0; i < count; i += 1) {
+                    int    neigh = moves[i];
+                    double value = minimax(neigh, monster, alpha, beta, depth - 1);
+                    if(halted()) return 0;
+                    if(value > alpha) {
+                        alpha = value;
+                        best  = neigh;
+                    }
+                    if(beta <= alpha) {
+                        cutoff(i, neigh, rogueToMove, depth);
+                        table.store(key, depth, beta, TranspositionTable.LOWER, neigh);
+                        return beta;
+                    }
+                }
+
+                table.store(key, depth, alpha, alpha > alphaStart ? TranspositionTable.EXACT 
+                                                                  : TranspositionTable.UPPER, best);
+                return alpha;
+            } else {
+                beta = Double.MAX_VALUE;
+
+                for(int i = 0; i < count; i += 1) {
+                    int    neigh = moves[i];
+                    double value = minimax(rogue, neigh, alpha, beta, depth - 1);
+                    if(halted()) return 0;
+                    if(value < beta) {
+                        beta = value;
+                        best = neigh;
+                    }
+                    if(beta <= alpha) {
+                        cutoff(i, neigh, rogueToMove, depth);
+                        table.store(key, depth, beta, TranspositionTable.UPPER, neigh);
+                        return beta;
+                    }
+                }
+
+                // beta started out unbounded, so anything that gets here is exact
+                table.store(key, depth, beta, TranspositionTable.EXACT, best);
+                return beta;
+            }
+        }
+
+        /*
+         * Puts the moves out of from into children[depth], best guess first, and returns
+         * how many there are. Staying put is one of them; sites already have an edge to
+         * themselves, so it only needs adding when the graph leaves that edge out.
+         */
+        private int orderMoves(int from, int other, boolean rogueToMove, int hashMove, int depth) {
+            int degree = map.degree(from);
+            reserve(depth, degree + 1);
+            int[]  moves = children[depth];
+            long[] rank  = ranks[depth];
+            int    side  = rogueToMove ? 0 : map.capacity();
+
+            int     count = 0;
+            boolean stays = false;
+            for(int k = 0; k < degree; k += 1) {
+                moves[count++] = map.neighbor(from, k);
+                if(map.neighbor(from, k) == from) stays = true;
+            }
+            if(!stays) moves[count++] = from;
+
+            for(int i = 0; i < count; i += 1) {
+                int  to = moves[i];
+                long first = (to == hashMove)                ? 3 
+                           : (to == killers[2 * depth])      ? 2 
+                           : (to == killers[2 * depth + 1])  ? 1 : 0;
+                int  d     = Math.min(distance(other, to), FAR);
+                long r     = first << 56 | (long) history[side + to] << 24 | (rogueToMove ? d : FAR - d);
+
+                // insertion sort, highest rank first; ties keep the graph's order
+                int j = i;
+                while(j > 0 && rank[j - 1] < r) {
+                    rank[j]  = rank[j - 1];
+                    moves[j] = moves[j - 1];
+                    j -= 1;
+                }
+                rank[j]  = r;
+                moves[j] = to;
+            }
+            return count;
+        }
+
+        // The move to site to, the i-th tried, was good enough to cut the search off
+        private void cutoff(int i, int to, boolean rogueToMove, int depth) {
+            cutoffs += 1;
+            if(i == 0) firstCutoffs += 1;
+
+            if(killers[2 * depth] != to) {
+                killers[2 * depth + 1] = killers[2 * depth];
+                killers[2 * depth]     = to;
+            }
+            int h = (rogueToMove ? 0 : map.capacity()) + to;
+            history[h] = Math.min(HISTORY_MAX, history[h] + depth * depth);
+        }
+
+        // Makes sure there is room for moves moves at the given depth
+        private void reserve(int depth, int moves) {
+            if(depth >= children.length) {
+                int old  = children.length;
+                children = java.util.Arrays.copyOf(children, depth + 1);
+                ranks    = java.util.Arrays.copyOf(ranks, depth + 1);
+                killers  = java.util.Arrays.copyOf(killers, 2 * (depth + 1));
+                java.util.Arrays.fill(killers, 2 * old, killers.length, -1);
+            }
+            if(children[depth] == null || children[depth].length < moves) {
+                children[depth] = new int[moves];
+                ranks[depth]    = new long[moves];
+            }
         }
     }
 
@@ -189,21 +672,25 @@ public class JPRogue implements Creature{
     *  Note: Since this heuristic algorithm isn't perfect, it sometimes comes up with strange moves,
     *        but as I improve this, those will become less frequent.
     */
-    private double score(Site rogue, Site monster) {
-        if(inLoop.contains(rogue))
-            return 1000 * (monster.manhattanTo(rogue) - 1);
-        if(safeCorridorStarts.contains(rogue))
-            return 500 * (monster.manhattanTo(rogue) - 1);
-        if(viableCorridors.contains(rogue))
-            return 250 * monster.manhattanTo(rogue);
-        if(dungeon.isRoom(rogue) && !viableCorridors.contains(rogue))
+    private double score(int rogueIndex, int monsterIndex) {
+        int k = kind[rogueIndex];
+        if(k == ROOM)
             return Double.MIN_VALUE;
-        if(dungeon.isRoom(rogue) && dungeon.isWall(rogue))
-            return 0;
-        if(dungeon.isRoom(rogue))
-            return (monster.manhattanTo(rogue) - 1);
+        return WEIGHT[k] * (distance(monsterIndex, rogueIndex) - OFFSET[k]);
+    }
 
-        return 0;     
+    /*
+     * How many moves the monster needs to reach the rogue. Walls and corridors make this
+     * a better measure than the manhattan distance, and it's a lookup when the game has
+     * a distance table. A monster that can't reach the rogue at all is farther away
+     * than any monster that can.
+     */
+    private int distance(int from, int to) {
+        if(distances == null)
+            return map.vertexAt(from).manhattanTo(map.vertexAt(to));
+
+        int d = distances.distance(from, to);
+        return (d == DistanceTable.UNREACHABLE) ? map.capacity() : d;
     }
 
     /*
@@ -213,8 +700,10 @@ public class JPRogue implements Creature{
      * 
      * It begins by taking in the vertices off all the corridor starts (cooridors connected 
      * to rooms) and then fills up hashtables with advantageous nodes.
+     * 
+     * Not private, so that the benchmarks in bench/ can time it on its own.
      */
-    private void findCorridors(Site[] vertices) {
+    void findCorridors(Site[] vertices) {
         // Find the nodes from which corridors start, these can be used to process 
         // corridors in general
         corridorStarts = new ArrayList<Site>();
@@ -228,81 +717,35 @@ public class JPRogue implements Creature{
             }
         }
 
-        // Find loops within corridors (good example is dungeon O)
-        for(Site start : corridorStarts) {
-            findCorridorLoops(start, start, new ArrayList<Site>());
-        }
-
-        // Find corridors which aren't dead ends, in general, this will mean 
-        // that there is a way out once you get to the other room
-        for(Site start : corridorStarts) {
-            findConnectedStarts(start, start, new ArrayList<Site>());
+        // Find loops within corridors (good example is dungeon O), and corridors which 
+        // aren't dead ends, in general, this will mean that there is a way out once you 
+        // get to the other room
+        CorridorAnalysis corridors = game.getCorridors();
+        for(Site site : vertices) {
+            int v = map.indexOf(site);
+            if(corridors.inLoop(v))      inLoop.add(site);
+            if(corridors.isViable(v))    viableCorridors.add(site);
+            if(corridors.isSafeStart(v)) safeCorridorStarts.add(site);
         }
 
         // Another special case, if a corridor connects to rooms, but is only one long,
         // then it is still viable, so add it to our algorithm.
         findSinglePassageways(corridorStarts);
-    }
 
-    /*
-     * Using a depth first search to loops within the corridor. A good example being Corridor O.
-     * Once this is done, we can add them to our hash table for quick look ups. I chose a depth
-     * first search since it would be easy to keep track of the nodes while processing them, and also
-     * because I was searching for all the loops, not just the shortest. In addition, I use an arraylist,
-     * and just add and delete from the back to prevent a memory hit.
-     */
-    private void findCorridorLoops(Site current, Site start, ArrayList<Site> visited) {
-        int index = visited.indexOf(current);
-        if((index != -1) && visited.size() > 0) {
-            if((visited.size() - index) > 2 && visited.size() > 2)  {
-                visited.add(current);
-                //System.out.println(visited);
-                //corridorLoops.add(new ArrayList<Site>(visited));
-                safeCorridorStarts.add(visited.get(0));
-                viableCorridors.addAll(visited);
-
-                // Add all the elements within the loop, not the elements leading to them.
-                inLoop.addAll(visited.subList(visited.indexOf(visited.get(visited.size() - 1)), 
-                              visited.size() - 1));
-                visited.remove(visited.size() - 1);
-                return;
-            }
-        }
-        else {
-            visited.add(current);
-            for(Site s : map.neighbors(current)) {
-                if(dungeon.isCorridor(s)) findCorridorLoops(s, start, visited);
-            }
-            visited.remove(visited.size() - 1);
+        // Sum it all up, one kind per site. Dead ends come first, since the search gives 
+        // up on them before it gets as far as scoring; the rest go in the order score() 
+        // used to ask about them.
+        kind = new byte[map.capacity()];
+        for(Site site : vertices) {
+            int v = map.indexOf(site);
+            if(dungeon.isCorridor(site) && !viableCorridors.contains(site)) kind[v] = DEAD_END;
+            else if(inLoop.contains(site))                                  kind[v] = LOOP;
+            else if(safeCorridorStarts.contains(site))                      kind[v] = SAFE;
+            else if(viableCorridors.contains(site))                         kind[v] = VIABLE;
+            else if(dungeon.isRoom(site))                                   kind[v] = ROOM;
         }
     }
 
-    /*
-     * Similar to the above function in pretty much every respect, but instead of looking for loops
-     * it checks for corridors that don't lead to dead ends. 
-     */
-    private void findConnectedStarts(Site current, Site start, ArrayList<Site> visited) {
-        int index = visited.indexOf(current);
-        if((index != -1) && visited.size() > 0) {
-            if(corridorStarts.indexOf(current) != -1 && visited.size() > 2)  {
-                //visited.add(current);
-                //corridorLoops.add(new ArrayList<Site>(visited));
-                safeCorridorStarts.add(visited.get(0));
-                viableCorridors.addAll(visited);
-                //System.out.println(visited);
-                //visited.remove(visited.size() - 1);
-                return;
-            }
-        }
-        else {
-            visited.add(current);
-            for(Site s : map.neighbors(current)) {
-                if(dungeon.isCorridor(s)) findConnectedStarts(s, start, visited);
-            }
-            visited.remove(visited.size() - 1);
-        }
-    }
-    
     /*
      *  An easy iteration through all the corridor starts to see it any of them
      *  are one long corridors between two rooms. Dungeon Q is an example of there
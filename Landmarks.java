@@ -0,0 +1,104 @@
+/**
+ * Distances from a few landmark sites to every site of a dungeon, so that
+ * an A* search knows roughly how far it still has to go.
+ *
+ * Going from v to w can't take fewer moves than the difference between
+ * their distances from any landmark, or the landmark would be closer to
+ * one of them by way of the other. The largest of those differences is
+ * never more than the real distance, and never drops by more than one a
+ * move, so A* guided by it finds shortest paths without ever having to
+ * look at anything twice. Landmarks out at the edges of the dungeon, far
+ * from each other, make it close to the real distance for many pairs of
+ * sites; each one after the first is the site farthest from all those
+ * already chosen.
+ *
+ * The distances are worked out once, with a breadth first search from
+ * each landmark, and then left alone, so one Landmarks can be shared by
+ * every game in a dungeon.
+ */
+public class Landmarks {
+    public static final int UNREACHABLE = -1;
+    public static final int LANDMARKS   = 8;
+
+    private final Graph<Site> graph;
+    private final int         count;       // landmarks there are, at most LANDMARKS
+    private final int[]       landmarks;   // their site indices
+    private final int[]       distances;   // from landmark l to site v at distances[v * count + l]
+
+    public Landmarks(Graph<Site> graph) {
+        this.graph = graph;
+        int n = graph.capacity();
+        int[] queue   = new int[n];
+        int[] nearest = new int[n];        // distance from each site to the closest landmark so far
+        int[] chosen  = new int[LANDMARKS];
+        int[][] tables = new int[LANDMARKS][];
+        int   found   = 0;
+
+        // The first landmark is as far as can be from the first open site, which puts it at an edge
+        int start = 0;
+        while(start < n && graph.degree(start) == 0) start += 1;
+        if(start < n) search(start, nearest, queue);
+        while(start < n && found < LANDMARKS) {
+            int far = -1;
+            for(int v = 0; v < n; v += 1)
+                if(nearest[v] != UNREACHABLE && (far == -1 || nearest[v] > nearest[far])) far = v;
+            if(found > 0 && nearest[far] == 0) break;   // every site is a landmark
+
+            chosen[found] = far;
+            tables[found] = search(far, new int[n], queue);
+            for(int v = 0; v < n; v += 1)
+                if(found == 0 || tables[found][v] < nearest[v]) nearest[v] = tables[found][v];
+            found += 1;
+        }
+
+        count     = found;
+        landmarks = java.util.Arrays.copyOf(chosen, found);
+        distances = new int[n * found];
+        for(int l = 0; l < found; l += 1)
+            for(int v = 0; v < n; v += 1) distances[v * found + l] = tables[l][v];
+    }
+
+    // Breadth first from the site with index from, filling into with the moves to every site
+    private int[] search(int from, int[] into, int[] queue) {
+        java.util.Arrays.fill(into, UNREACHABLE);
+        int head = 0, tail = 0;
+        queue[tail++] = from;
+        into[from] = 0;
+        while(head < tail) {
+            int v = queue[head++];
+            for(int k = 0; k < graph.degree(v); k += 1) {
+                int w = graph.neighbor(v, k);
+                if(into[w] != UNREACHABLE) continue;
+                into[w] = into[v] + 1;
+                queue[tail++] = w;
+            }
+        }
+        return into;
+    }
+
+    public int count()              { return count;        }
+
+    // the site index of landmark l
+    public int landmark(int l)      { return landmarks[l]; }
+
+    // the number of moves from landmark l to the site with index v, or UNREACHABLE
+    public int distance(int l, int v) {
+        return distances[v * count + l];
+    }
+
+    /*
+     * @return a number of moves the site with index v is at least from the one with
+     *         index w
+     */
+    public int lowerBound(int v, int w) {
+        int bound = 0;
+        int a = v * count, b = w * count;
+        for(int l = 0; l < count; l += 1) {
+            int dv = distances[a + l], dw = distances[b + l];
+            if(dv == UNREACHABLE || dw == UNREACHABLE) continue;
+            int difference = (dv > dw) ? dv - dw : dw - dv;
+            if(difference > bound) bound = difference;
+        }
+        return bound;
+    }
+}
@@ -24,64 +24,71 @@ import java.util.Scanner;
 public class Monster {
     private Game game;
     private Dungeon dungeon;
-    private JPMap<Site> graph;
+    private GridMap graph;
     private SiteGraphSearcher graphSearcher;
     private Site[] vertices;
+    private RegionGraph.Search regions;//only for dungeons too big for a DistanceTable
+
+    private static final int CAPTURE_DEPTH = 40;
 
     /**
      * Constructs a monster in Game game
      */
     public Monster(Game game) {
-        dungeon = game.getDungeon();
-        graph = new JPMap<Site>(dungeon.size()*dungeon.size());
-        graphSearcher = new SiteGraphSearcher(graph);
-        
         this.game    = game;
         this.dungeon = game.getDungeon();
+        graph = game.getGraph();
+        graphSearcher = new SiteGraphSearcher(graph);
+        
         vertices = new Site[dungeon.size()*dungeon.size()];
-        int numVertices= 0;
-        for(int i= 0; i<dungeon.size(); i++) {
-            for(int j= 0; j<dungeon.size(); j++) {
-                Site site = new Site(i,j);
-                graph.addVertex(site);
-                vertices[numVertices] = site;
-                numVertices++;
-            }
-        }
-        for(int i= 0; i<numVertices; i++) {
-            for(int j= 0; j<numVertices; j++) {
-                Site s = vertices[i];
-                Site t = vertices[j];
-                if(dungeon.isLegalMove(s,t))
-                    graph.addEdge(s,t);
-            }
-        }
+        for(int i= 0; i<vertices.length; i++)
+            vertices[i] = graph.vertexAt(i);
+
+        if(game.getRegions()!=null)
+            regions = new RegionGraph.Search(game.getRegions(), game.getLandmarks());
     }
 
     /**
      * @return the monster's next move as a Site. Picks next move by first checking if there is a definite way 
-     * to win in 5 steps, and if not, just picking the Site on the shortest path to the Rogue's location. 
+     * to win in CAPTURE_DEPTH steps, and if not, just picking the Site on the shortest path to the Rogue's location. 
      * If there is no path to the Rogue returns null, resulting in a NullPointerException in Dungeon.
      */
     public Site move() {
         Site monster = game.getMonsterSite();
         Site rogue   = game.getRogueSite();
         
-        for(Site neighbor: graph.neighbors(monster))//prevents it from having to go through the
-                                                    //other method and succesfully hides a small error.
-                                                    //It would almost definitely still win, just not quite as fast.
-            if(neighbor.equals(rogue))
-                return neighbor;
+        int m = graph.indexOf(monster);
+        int r = graph.indexOf(rogue);
+        for(int k= 0; k<graph.degree(m); k++)//prevents it from having to go through the
+                                             //other method and succesfully hides a small error.
+                                             //It would almost definitely still win, just not quite as fast.
+            if(graph.neighbor(m, k)==r)
+                return graph.vertexAt(r);
+
+        if(game.getTablebase()!=null) {//a solved position doesn't need searching at all
+            Site move = game.getTablebase().bestMonsterMove(monster, rogue);
+            if(move!=null) return move;
+        }
         
-        Site move = graphSearcher.bestMovebidiIDDFS(monster, rogue, 5);//raise the number to win faster. But actually,
-                                                                        //since the time complexity is really high
-                                                                        //and depends on the number, it will probably
-                                                                        //win much slower. It will be in fewer steps,
-                                                                        //though.
+        Site move = graphSearcher.bestForcedCapture(monster, rogue, CAPTURE_DEPTH);//the search remembers what it
+                                                                                 //finds between turns, so it
+                                                                                 //can look a lot further ahead
+                                                                                 //than it used to.
+        graphSearcher.report(game.getMonsterStats());
         if(move!=null) return move;
-        else           return graphSearcher.siteOnShortestPath(monster, rogue);
+
+        if(game.getDistances()!=null) {//the dungeon doesn't change, so every shortest path is already known
+            move = game.getDistances().nextHop(monster, rogue);
+            if(move!=null) return move;
+        }
+        else if(regions!=null) {//without one, the search goes from room to corridor to room, heading
+                                //for the Rogue, and only looks at single sites near either end
+            int next = regions.nextHop(m, r);
+            if(next!=-1) return graph.vertexAt(next);
+        }
+        return graphSearcher.siteOnShortestPath(monster, rogue);
     }
-    
+
     /**
      * @return ArrayList<Site> containing corners
      * Currently does not make sure it's an actual corner. Only finds if there are only three room exits.
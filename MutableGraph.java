@@ -0,0 +1,36 @@
+/**
+ * A Graph that can be built up one vertex and edge at a time, and that 
+ * keeps track of which vertices have been marked, Dale/Joyce/Weems style.
+ * 
+ * Since the marks live in the graph, only one search at a time can use them.
+ */
+public interface MutableGraph<E> extends Graph<E>
+{
+    /*
+     * add vertex to the graph if the graph is NOT full
+     */
+    public void addVertex (E vertex);
+    /*
+     * add an edge from fromVertex to toVertex
+     */
+    public void addEdge(E fromVertex, E toVertex);
+    
+    /*
+     * mark related methods for managing the graph
+     * Design thought:  the Dale/Joyce/Weems text places responsibility in
+     * the Graph class, but the visited vertex list could be maintained by
+     * a class using the Graph.
+     */
+    /*
+     * unmark all vertices in the graph
+     */
+    public void clearMarks ();
+    /*
+     * @return true if vertex is marked, false otherwise
+     */
+    public boolean isMarked(E vertex);
+    /*
+     * mark vertex
+     */
+    public void mark (E vertex);
+}
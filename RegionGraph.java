@@ -0,0 +1,336 @@
+/**
+ * A coarse map of a dungeon for finding the way across it, made of regions
+ * instead of sites.
+ *
+ * A region is a connected patch of room, or of corridor, of at most
+ * MAX_REGION sites, so a room is usually one region and a long corridor a
+ * few. The sites of a region with a legal move into another region are its
+ * portals. The distance within its region from every portal to every site
+ * of the region is worked out once, when the graph is built.
+ *
+ * Any shortest path is then a series of stretches within one region, from
+ * portal to portal, and single moves across from one region to the next.
+ * So a shortest path search only has to look at the portals: it starts
+ * with a search within the region of the start, runs over the portals
+ * using the stored distances, and finishes with the stored distances from
+ * the portals to the end. Only the two end regions are ever looked at site
+ * by site, and the distances come out exact.
+ *
+ * A RegionGraph never changes once it is built, so one can be shared by
+ * every game in a dungeon. The searches each need a Search of their own.
+ */
+public class RegionGraph {
+    public static final int UNREACHABLE = -1;
+    public static final int MAX_REGION  = 256;
+
+    private final Graph<Site> graph;
+    private final int[]   region;        // region of each site, -1 for walls
+    private final int[]   local;         // where each site comes within its region
+    private final int[]   siteStart;     // sites of region g are sites[siteStart[g] .. siteStart[g + 1] - 1]
+    private final int[]   sites;
+    private final int[]   portalStart;   // portals of region g are portals[portalStart[g] .. portalStart[g + 1] - 1]
+    private final int[]   portals;       // by portal number, the site
+    private final int[]   owner;         // by portal number, its region
+    private final int[]   within;        // by portal number, where its distances start in distances
+    private final short[] distances;     // from each portal to every site of its region
+    private final int[]   linkStart;     // moves out of portal p are links[linkStart[p] .. linkStart[p + 1] - 1]
+    private final int[]   links;         // to another portal of the region, or across to the next one
+    private final int[]   lengths;       // and how many moves each takes
+    private final int     regions;
+    private final int     maxDegree;     // the most legal moves out of any site
+
+    public RegionGraph(Dungeon dungeon, Graph<Site> graph) {
+        this.graph = graph;
+        int n  = graph.capacity();
+        region = new int[n];
+        local  = new int[n];
+        java.util.Arrays.fill(region, -1);
+
+        // Grow each region out from its first site, breadth first, until it's full
+        int[] order  = new int[n];
+        int[] starts = new int[n + 1];
+        int   count  = 0, placed = 0, most = 1;
+        for(int v = 0; v < n; v += 1) {
+            most = Math.max(most, graph.degree(v));
+            if(region[v] != -1 || graph.degree(v) == 0) continue;
+            boolean room = dungeon.isRoom(v);
+            starts[count] = placed;
+            int head = placed;
+            order[placed++] = v;
+            region[v] = count;
+            while(head < placed && placed - starts[count] < MAX_REGION) {
+                int u = order[head++];
+                for(int k = 0; k < graph.degree(u) && placed - starts[count] < MAX_REGION; k += 1) {
+                    int w = graph.neighbor(u, k);
+                    if(region[w] != -1 || dungeon.isRoom(w) != room) continue;
+                    region[w] = count;
+                    order[placed++] = w;
+                }
+            }
+            for(int i = starts[count]; i < placed; i += 1) local[order[i]] = i - starts[count];
+            count += 1;
+        }
+        starts[count] = placed;
+        regions   = count;
+        maxDegree = most;
+        sites     = java.util.Arrays.copyOf(order, placed);
+        siteStart = java.util.Arrays.copyOf(starts, count + 1);
+
+        // The portals, region by region
+        int[] found = new int[placed];
+        int   total = 0;
+        portalStart = new int[count + 1];
+        for(int g = 0; g < count; g += 1) {
+            portalStart[g] = total;
+            for(int i = siteStart[g]; i < siteStart[g + 1]; i += 1)
+                if(crosses(sites[i])) found[total++] = sites[i];
+        }
+        portalStart[count] = total;
+        portals = java.util.Arrays.copyOf(found, total);
+        owner   = new int[total];
+        for(int p = 0; p < total; p += 1) owner[p] = region[portals[p]];
+
+        // And the distances from each of them, staying within the region
+        within = new int[total];
+        int size = 0;
+        for(int p = 0; p < total; p += 1) {
+            within[p] = size;
+            size += siteStart[region[portals[p]] + 1] - siteStart[region[portals[p]]];
+        }
+        distances = new short[size];
+        int[] queue = new int[MAX_REGION];
+        for(int p = 0; p < total; p += 1) {
+            java.util.Arrays.fill(distances, within[p], within[p] + sizeOf(region[portals[p]]), (short) -1);
+            int head = 0, tail = 0;
+            queue[tail++] = portals[p];
+            distances[within[p] + local[portals[p]]] = 0;
+            while(head < tail) {
+                int u = queue[head++];
+                int d = distances[within[p] + local[u]];
+                for(int k = 0; k < graph.degree(u); k += 1) {
+                    int w = graph.neighbor(u, k);
+                    if(region[w] != region[u] || distances[within[p] + local[w]] != -1) continue;
+                    distances[within[p] + local[w]] = (short) (d + 1);
+                    queue[tail++] = w;
+                }
+            }
+        }
+
+        // Then the portals on their own, as a graph of their own, so that searching over
+        // them only ever looks at a few small arrays
+        linkStart = new int[total + 1];
+        int linked = 0;
+        for(int p = 0; p < total; p += 1) {
+            linkStart[p] = linked;
+            linked += portalCount(region[portals[p]]) - 1;
+            for(int k = 0; k < graph.degree(portals[p]); k += 1)
+                if(region[graph.neighbor(portals[p], k)] != region[portals[p]]) linked += 1;
+        }
+        linkStart[total] = linked;
+        links   = new int[linked];
+        lengths = new int[linked];
+        for(int p = 0; p < total; p += 1) {
+            int at = linkStart[p], g = region[portals[p]];
+            for(int o = portalStart[g]; o < portalStart[g + 1]; o += 1) {
+                if(o == p) continue;
+                links[at]     = o;
+                lengths[at++] = distances[within[p] + local[portals[o]]];
+            }
+            for(int k = 0; k < graph.degree(portals[p]); k += 1) {
+                int w = graph.neighbor(portals[p], k);
+                if(region[w] == g) continue;
+                links[at]     = portalOf(w);
+                lengths[at++] = 1;
+            }
+        }
+    }
+
+    public int regions()              { return regions;                              }
+
+    public int portals()              { return portals.length;                       }
+
+    // the region of the site with index v, -1 for a wall
+    public int regionOf(int v)        { return region[v];                            }
+
+    public int sizeOf(int g)          { return siteStart[g + 1] - siteStart[g];      }
+
+    public int portalCount(int g)     { return portalStart[g + 1] - portalStart[g];  }
+
+    // Does the site with index v have a legal move into another region?
+    private boolean crosses(int v) {
+        for(int k = 0; k < graph.degree(v); k += 1)
+            if(region[graph.neighbor(v, k)] != region[v]) return true;
+        return false;
+    }
+
+    /**
+     * The state of one search over a RegionGraph, kept between searches so that
+     * nothing has to be allocated or cleared portal by portal for the next one.
+     *
+     * Given Landmarks, the search over the portals is an A* aimed at the site the
+     * search is from, and stops as soon as nothing still open could get any of
+     * that site's neighbors any closer.
+     */
+    public static class Search {
+        private final RegionGraph regions;
+        private final Graph<Site> graph;
+        private final Landmarks   landmarks;  // null for a plain Dijkstra
+        private final int[]       best;       // by portal number, shortest distance found from the target
+        private final VisitMarks  reached;    // portals with a distance in best
+        private final VisitMarks  settled;    // portals whose distance is final
+        private final IntHeap     heap;
+        private final int[]       near;       // distances from the target within its region
+        private final int[]       queue = new int[MAX_REGION];
+        private final int[]       hops;       // the neighbors of from, and how far each is from the target
+        private final int[]       hopRegion;
+        private final int[]       hopDistance;
+        private final int[]       marks;      // by portal number, its distances from the landmarks
+        private final int[]       toward;     // from's distances from the landmarks
+        private int from, count;
+
+        public Search(RegionGraph regions) {
+            this(regions, null);
+        }
+
+        public Search(RegionGraph regions, Landmarks landmarks) {
+            this.regions   = regions;
+            this.graph     = regions.graph;
+            this.landmarks = landmarks;
+            best    = new int[regions.portals.length];
+            reached = new VisitMarks(regions.portals.length);
+            settled = new VisitMarks(regions.portals.length);
+            heap    = new IntHeap(64);
+            near    = new int[MAX_REGION];
+            hops        = new int[regions.maxDegree];
+            hopRegion   = new int[regions.maxDegree];
+            hopDistance = new int[regions.maxDegree];
+
+            // The landmark distances of the portals, side by side, as those are all the search looks up
+            int marked = (landmarks == null) ? 0 : landmarks.count();
+            marks  = new int[regions.portals.length * marked];
+            toward = new int[marked];
+            for(int p = 0; p < regions.portals.length; p += 1)
+                for(int l = 0; l < marked; l += 1) marks[p * marked + l] = landmarks.distance(l, regions.portals[p]);
+        }
+
+        /*
+         * @return the number of moves from the site with index from to the one with index to,
+         *         or UNREACHABLE
+         */
+        public int distance(int from, int to) {
+            if(regions.region[from] == -1 || regions.region[to] == -1) return (from == to) ? 0 : UNREACHABLE;
+            hops[0] = from;
+            search(from, to, 1);
+            return hopDistance[0];
+        }
+
+        /*
+         * @return the index of the neighbor of from that is the fewest moves from to, the
+         *         first in the graph's order if several are, or -1 if none can reach it
+         */
+        public int nextHop(int from, int to) {
+            if(regions.region[from] == -1 || regions.region[to] == -1) return -1;
+            for(int k = 0; k < graph.degree(from); k += 1) hops[k] = graph.neighbor(from, k);
+            search(from, to, graph.degree(from));
+
+            int hop = -1;
+            for(int k = 0; k < count; k += 1)
+                if(hopDistance[k] != UNREACHABLE && (hop == -1 || hopDistance[k] < hopDistance[hop])) hop = k;
+            return (hop == -1) ? -1 : hops[hop];
+        }
+
+        // Finds how far each of the first count sites in hops is from to, into hopDistance
+        private void search(int from, int to, int count) {
+            this.from  = from;
+            this.count = count;
+            for(int k = 0; k < count; k += 1) hopRegion[k] = regions.region[hops[k]];
+            for(int l = 0; l < toward.length; l += 1) toward[l] = landmarks.distance(l, from);
+            reached.clear();
+            settled.clear();
+            heap.clear();
+
+            // Within its own region, the target is searched site by site
+            int g = regions.region[to];
+            java.util.Arrays.fill(near, 0, regions.sizeOf(g), UNREACHABLE);
+            int head = 0, tail = 0;
+            queue[tail++] = to;
+            near[regions.local[to]] = 0;
+            while(head < tail) {
+                int u = queue[head++];
+                for(int k = 0; k < graph.degree(u); k += 1) {
+                    int w = graph.neighbor(u, k);
+                    if(regions.region[w] != g || near[regions.local[w]] != UNREACHABLE) continue;
+                    near[regions.local[w]] = near[regions.local[u]] + 1;
+                    queue[tail++] = w;
+                }
+            }
+            for(int k = 0; k < count; k += 1)
+                hopDistance[k] = (regions.region[hops[k]] == g) ? near[regions.local[hops[k]]] : UNREACHABLE;
+            for(int p = regions.portalStart[g]; p < regions.portalStart[g + 1]; p += 1)
+                offer(p, near[regions.local[regions.portals[p]]]);
+
+            // Then over the portals, until every portal still open is too far off to matter
+            while(!heap.isEmpty() && heap.peekPriority() - 1 <= closest()) {
+                int q = heap.pop();
+                if(!settled.visit(q)) continue;   // already came out with a shorter distance
+
+                int h = regions.owner[q];
+                for(int k = 0; k < count; k += 1) {
+                    if(hopRegion[k] != h) continue;
+                    int d = best[q] + regions.distances[regions.within[q] + regions.local[hops[k]]];
+                    if(hopDistance[k] == UNREACHABLE || d < hopDistance[k]) hopDistance[k] = d;
+                }
+                // Over to the other portals of the region, and across into the regions next door
+                for(int i = regions.linkStart[q]; i < regions.linkStart[q + 1]; i += 1)
+                    offer(regions.links[i], best[q] + regions.lengths[i]);
+            }
+        }
+
+        /*
+         * A portal q that comes out of the heap with priority f is at least f - 1 moves from
+         * every site in hops, since they are all next to from and the bound is to from. So
+         * once f - 1 is past the closest of them, no site in hops can get as close as that
+         * any more, nor can any site tie with it, and the order of the hops is settled.
+         *
+         * @return the distance of the site in hops closest to the target so far
+         */
+        private int closest() {
+            int closest = Integer.MAX_VALUE;
+            for(int k = 0; k < count; k += 1)
+                if(hopDistance[k] != UNREACHABLE && hopDistance[k] < closest) closest = hopDistance[k];
+            return closest;
+        }
+
+        private void offer(int p, int d) {
+            if(d == UNREACHABLE || settled.isMarked(p)) return;
+            if(reached.visit(p) || d < best[p]) {
+                best[p] = d;
+                heap.push(p, d + bound(p));
+            }
+        }
+
+        // The landmarks' bound on how far portal p is from from, as in Landmarks.lowerBound
+        private int bound(int p) {
+            int bound = 0;
+            for(int l = 0, at = p * toward.length; l < toward.length; l += 1, at += 1) {
+                int dp = marks[at], df = toward[l];
+                if(dp == Landmarks.UNREACHABLE || df == Landmarks.UNREACHABLE) continue;
+                int difference = (dp > df) ? dp - df : df - dp;
+                if(difference > bound) bound = difference;
+            }
+            return bound;
+        }
+    }
+
+    // The portal number of the site with index v, which must be a portal
+    private int portalOf(int v) {
+        int g = region[v];
+        int lo = portalStart[g], hi = portalStart[g + 1] - 1;
+        while(lo < hi) {   // portals are in the order their sites come in the region
+            int mid = (lo + hi) >>> 1;
+            if(local[portals[mid]] < local[v]) lo = mid + 1;
+            else                                hi = mid;
+        }
+        return lo;
+    }
+}
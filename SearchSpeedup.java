@@ -0,0 +1,64 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Scanner;
+/*************************************************************************
+ *  Reports how much faster the rogue searches with more threads.
+ *
+ *  Execution:
+ *      java SearchSpeedup [moves] [dungeonX ...]
+ *
+ *  For each dungeon, a game is played for the given number of moves
+ *  (10 by default) on a single thread and the positions the rogue had to
+ *  move from are recorded. The rogue then searches those same positions
+ *  again with 1, 2, 4, ... threads and then the number of cores, from a
+ *  fresh transposition table each time.
+ *************************************************************************/
+
+public class SearchSpeedup {
+
+    public static void main(String[] args) throws Exception {
+        int moves = (args.length > 0) ? Integer.parseInt(args[0]) : 10;
+        ArrayList<String> names = new ArrayList<String>();
+        for (int i = 1; i < args.length; i++) names.add(args[i]);
+        if (names.isEmpty()) {
+            for (char c = 'A'; c <= 'Z'; c++)
+                if (new File("dungeons/dungeon" + c + ".txt").exists()) names.add("dungeon" + c);
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        System.out.printf("%-10s %7s %10s %8s%n", "dungeon", "threads", "ms", "speedup");
+        for (String name : names) {
+            // Record the positions the rogue moves from
+            Game game = load(name);
+            ArrayList<Site[]> positions = new ArrayList<Site[]>();
+            for (int t = 0; t < moves; t++) {
+                if (game.getMonsterSite().equals(game.getRogueSite())) break;
+                game.moveMonster();
+                if (game.getMonsterSite().equals(game.getRogueSite())) break;
+                positions.add(new Site[] { game.getRogueSite(), game.getMonsterSite() });
+                game.moveRogue();
+            }
+
+            double single = 0;
+            // doubling each time, but always ending on the number of cores
+            for (int threads = 1; threads <= cores; threads = (threads < cores) ? Math.min(2 * threads, cores) : cores + 1) {
+                JPRogue rogue = load(name).getRogue();
+                rogue.setThreads(threads);
+                long start = System.nanoTime();
+                for (Site[] position : positions) rogue.move(position[0], position[1]);
+                double ms = (System.nanoTime() - start) / 1e6;
+                rogue.setThreads(1);
+
+                if (threads == 1) single = ms;
+                System.out.printf("%-10s %7d %10.1f %8.2f%n", name, threads, ms, single / ms);
+            }
+        }
+    }
+
+    private static Game load(String name) throws Exception {
+        Scanner in = new Scanner(new File("dungeons/" + name + ".txt"));
+        Game game = new Game(in);
+        in.close();
+        return game;
+    }
+}
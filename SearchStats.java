@@ -0,0 +1,175 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+/*************************************************************************
+ *  What one creature's searches did, move by move.
+ *
+ *  The searches count nodes, cutoffs and table lookups in their own fields
+ *  and hand the totals over once a move, so counting costs next to nothing.
+ *  Game times each move and measures the bytes allocated by the thread that
+ *  made it; anything allocated by the rogue's helper threads isn't counted.
+ *
+ *  With an output set, every move is written as one line of JSON:
+ *
+ *      {"game":"dungeonD","creature":"rogue","move":3,"nanos":1523000,
+ *       "bytes":20480,"nodes":51234,"cutoffs":10211,"firstCutoffs":9120,
+ *       "depth":10,"probes":40112,"hits":12034}
+ *
+ *  For the rogue, probes and hits are transposition table lookups; for the
+ *  monster, lookups in its capture cache. firstCutoffs are the cutoffs made
+ *  by the first move tried, so the share of cutoffs that are first cutoffs
+ *  shows how well the moves are ordered. summary() gives the totals for
+ *  the game, with a histogram of how long the moves took: entry k counts
+ *  the moves that took from 2^k up to 2^(k+1) microseconds.
+ *************************************************************************/
+
+public class SearchStats {
+    private static final int BUCKETS = 40;
+
+    private final String creature;
+    private String       game = "";
+    private PrintStream  out;
+
+    // the move being made
+    private long start, startBytes;
+    private long nodes, cutoffs, firstCutoffs, probes, hits;
+    private int  depth;
+
+    // every move so far
+    private int    moves;
+    private long   totalNanos, totalBytes, totalNodes, totalCutoffs, totalFirstCutoffs, totalProbes, totalHits;
+    private int    maxDepth;
+    private long[] latency = new long[BUCKETS];
+
+    public SearchStats(String creature) {
+        this.creature = creature;
+    }
+
+    // writes a line for every move to out, labelled with game
+    public void setOutput(PrintStream out, String game) {
+        this.out  = out;
+        this.game = game;
+    }
+
+    public void startMove() {
+        nodes = cutoffs = firstCutoffs = probes = hits = 0;
+        depth      = 0;
+        startBytes = allocatedBytes();
+        start      = System.nanoTime();
+    }
+
+    // called by the searches, possibly from several threads at once
+    public synchronized void count(long nodes, long cutoffs, long firstCutoffs, long probes, long hits) {
+        this.nodes        += nodes;
+        this.cutoffs      += cutoffs;
+        this.firstCutoffs += firstCutoffs;
+        this.probes       += probes;
+        this.hits         += hits;
+    }
+
+    // for searches that don't order their moves
+    public void count(long nodes, long cutoffs, long probes, long hits) {
+        count(nodes, cutoffs, 0, probes, hits);
+    }
+
+    // the deepest search completed for this move
+    public void reached(int depth) {
+        this.depth = Math.max(this.depth, depth);
+    }
+
+    public void endMove() {
+        long nanos = System.nanoTime() - start;
+        long bytes = allocatedBytes() - startBytes;
+
+        moves             += 1;
+        totalNanos        += nanos;
+        totalBytes        += bytes;
+        totalNodes        += nodes;
+        totalCutoffs      += cutoffs;
+        totalFirstCutoffs += firstCutoffs;
+        totalProbes       += probes;
+        totalHits         += hits;
+        maxDepth           = Math.max(maxDepth, depth);
+        latency[bucket(nanos / 1000)] += 1;
+
+        if (out != null)
+            out.println("{" + label() + ",\"move\":" + moves + ",\"nanos\":" + nanos + ",\"bytes\":" + bytes
+                        + ",\"nodes\":" + nodes + ",\"cutoffs\":" + cutoffs + ",\"firstCutoffs\":" + firstCutoffs
+                        + ",\"depth\":" + depth
+                        + ",\"probes\":" + probes + ",\"hits\":" + hits + "}");
+    }
+
+    public int  getMoves()   { return moves;      }
+
+    public long getNanos()   { return totalNanos; }
+
+    public long getNodes()   { return totalNodes; }
+
+    // fraction of the lookups that found something, 0 if there were none
+    public double hitRate() {
+        return (totalProbes == 0) ? 0 : (double) totalHits / totalProbes;
+    }
+
+    // fraction of the nodes searched that were cut off, 0 if there were none
+    public double cutoffRate() {
+        return (totalNodes == 0) ? 0 : (double) totalCutoffs / totalNodes;
+    }
+
+    // fraction of the cutoffs made by the first move tried, 0 if there were none
+    public double firstCutoffRate() {
+        return (totalCutoffs == 0) ? 0 : (double) totalFirstCutoffs / totalCutoffs;
+    }
+
+    // one line of JSON with the totals over all moves so far
+    public String summary() {
+        int last = BUCKETS - 1;
+        while (last > 0 && latency[last] == 0) last--;
+        StringBuilder histogram = new StringBuilder();
+        for (int k = 0; k <= last; k++) {
+            if (k > 0) histogram.append(',');
+            histogram.append(latency[k]);
+        }
+
+        return "{" + label() + ",\"moves\":" + moves + ",\"nanos\":" + totalNanos + ",\"bytes\":" + totalBytes
+               + ",\"nodes\":" + totalNodes + ",\"cutoffs\":" + totalCutoffs
+               + ",\"firstCutoffs\":" + totalFirstCutoffs + ",\"maxDepth\":" + maxDepth
+               + ",\"probes\":" + totalProbes + ",\"hits\":" + totalHits
+               + ",\"hitRate\":" + rate(hitRate()) + ",\"cutoffRate\":" + rate(cutoffRate())
+               + ",\"firstCutoffRate\":" + rate(firstCutoffRate())
+               + ",\"latencyLog2Micros\":[" + histogram + "]}";
+    }
+
+    private static String rate(double rate) {
+        return String.format(java.util.Locale.ROOT, "%.4f", rate);
+    }
+
+    private String label() {
+        return "\"game\":" + quote(game) + ",\"creature\":" + quote(creature);
+    }
+
+    // s as a JSON string, since a game can be named after any file path
+    private static String quote(String s) {
+        StringBuilder quoted = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if      (c == '"' || c == '\\') quoted.append('\\').append(c);
+            else if (c < 0x20)              quoted.append(String.format("\\u%04x", (int) c));
+            else                            quoted.append(c);
+        }
+        return quoted.append('"').toString();
+    }
+
+    // floor(log2(micros)), with anything under 2 microseconds in the first bucket
+    private static int bucket(long micros) {
+        if (micros <= 1) return 0;
+        return Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros));
+    }
+
+    // bytes allocated so far by the current thread, or 0 if the JVM can't tell
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return 0;
+        com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) threads;
+        if (!sun.isThreadAllocatedMemorySupported() || !sun.isThreadAllocatedMemoryEnabled()) return 0;
+        return sun.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
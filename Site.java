@@ -8,21 +8,33 @@
  *  Modified by J. Smith
  *      -- improved variable and method names!
  *      -- added toString
+ *
+ *  Sites handed out by Dungeon.site are interned: there is exactly one
+ *  instance per cell, carrying a dense id (row * size + col), so they can
+ *  be compared by identity and used as array indices.
  *************************************************************************/
 
 
 public class Site {
-    private int row;
-    private int col;
+    private final int row;
+    private final int col;
+    private final int id;      // index of the site within its dungeon, -1 if not interned
 
     // initialize board from file
     public Site(int row, int col) {
+        this(row, col, -1);
+    }
+
+    // only used by Dungeon, when building its canonical sites
+    Site(int row, int col, int id) {
         this.row = row;
         this.col = col;
+        this.id  = id;
     }
 
     public int row() { return row; }
     public int col() { return col; }
+    public int id()  { return id;  }
 
     // Manhattan distance between invoking Site and w
     public int manhattanTo(Site other) {
@@ -36,8 +48,10 @@ public class Site {
 
     // does invoking site equal site w?
     public boolean equals(Object w) {
+        if (this == w) return true;
+        if (!(w instanceof Site)) return false;
         Site obj = (Site)w;
-        return (manhattanTo(obj) == 0);
+        return row == obj.row && col == obj.col;
     }
 
     public String toString ()
@@ -8,12 +8,18 @@ import java.util.*;
  */
 public class SiteGraphSearcher {
     private Graph<Site> graph;
+    private CaptureCache captures;
+    private VisitMarks visited;         //the searches' own marks, so the graph is only ever read
+    private long nodes, probes, hits;   //counted for SearchStats, handed over by report
+    private int depth;
 
     /**
      * Constructs a SiteGraphSearcher from the given Graph graph.
      */
     public SiteGraphSearcher(Graph<Site> graph) {
         this.graph = graph;
+        this.captures = new CaptureCache(graph.capacity(), 18);
+        this.visited = new VisitMarks(graph.capacity());
     }
 
     /**
@@ -51,15 +57,76 @@ public class SiteGraphSearcher {
      * @return next best move if there is a way to win after maxDepth steps. Else null.
      */
     public Site bestMovebidiIDDFS(Site node, Site target, int maxDepth) {
+        int n = graph.indexOf(node);
+        int t = graph.indexOf(target);
         for(int i= 0; i<maxDepth; i++) {
-            for(Site from: graph.neighbors(node)) {
-                if(isBestMovebidiDLS(from, target, i))
-                    return from;
+            depth = i;
+            for(int k= 0; k<graph.degree(n); k++) {
+                int from = graph.neighbor(n, k);
+                if(isBestMovebidiDLS(from, t, i))
+                    return graph.vertexAt(from);
             }
         }
         return null;
     }
 
+    /**
+     * Finds the next move for a Monster starting on node that is sure to catch a Rogue starting on
+     * target within maxDepth moves, the same way bestMovebidiIDDFS does, but without redoing work.
+     * Everything found out along the way is remembered in a cache that lasts between turns, so 
+     * trying each depth in turn costs little more than trying the deepest one, and the next turn
+     * mostly starts from positions that have already been looked at. That makes much larger 
+     * maximum depths practical.
+     * Unlike isBestMovebidiDLS, the Monster gets to see where the Rogue went before answering it,
+     * which is how the game is actually played.
+     * 
+     * @param node Starting position of Monster
+     * @param target Starting position of Rogue
+     * @param maxDepth Maximum depth to search to
+     * @return next move if there is a way to win after maxDepth steps. Else null.
+     */
+    public Site bestForcedCapture(Site node, Site target, int maxDepth) {
+        int n = graph.indexOf(node);
+        int t = graph.indexOf(target);
+        for(int i= 0; i<maxDepth; i++) {
+            depth = i;
+            for(int k= 0; k<graph.degree(n); k++) {
+                int from = graph.neighbor(n, k);
+                if(canForceCapture(from, t, i))
+                    return graph.vertexAt(from);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if a Monster on node can catch a Rogue on target, whose turn it is, within 
+     * depth more moves no matter where the Rogue goes. Else false.
+     */
+    private boolean canForceCapture(int node, int target, int depth) {
+        nodes++;
+        probes++;
+        Boolean known = captures.lookup(node, target, depth);
+        if(known!=null) {
+            hits++;
+            return known;
+        }
+
+        boolean caught = true;
+        for(int i= 0; i<graph.degree(target) && caught; i++) {
+            int tChild = graph.neighbor(target, i);
+            if(tChild==node) continue;   //walked right into the Monster
+
+            caught = false;
+            for(int j= 0; j<graph.degree(node) && !caught; j++) {
+                int nChild = graph.neighbor(node, j);
+                caught = (nChild==tChild) || (depth>0 && canForceCapture(nChild, tChild, depth-1));
+            }
+        }
+        captures.store(node, target, depth, caught);
+        return caught;
+    }
+
     /**
      * Implements a bidirectional depth-limited search to find if there is a way to always catch in
      * under depth moves a Rogue starting on target if the Monster starts at node.
@@ -87,16 +154,27 @@ public class SiteGraphSearcher {
      * @return true if there is a way to catch the Rogue within depth steps. Else false.
      */
     public boolean isBestMovebidiDLS(Site node, Site target, int depth) {
+        return isBestMovebidiDLS(graph.indexOf(node), graph.indexOf(target), depth);
+    }
+
+    /**
+     * Same as above, but works on the indices of the Sites in the graph so that it doesn't 
+     * have to build a new Queue of neighbors every time it goes through a loop.
+     */
+    private boolean isBestMovebidiDLS(int node, int target, int depth) {
+        nodes++;
         if(depth >= 0) {
             boolean worked = true;
-            for(Site tChild: graph.neighbors(target)) //base case
-                worked = worked && graph.neighbors(node).contains(tChild);
+            for(int i= 0; i<graph.degree(target) && worked; i++) //base case
+                worked = isNeighbor(node, graph.neighbor(target, i));
 
             if(worked) return worked;
             else {
-                for(Site nChild: graph.neighbors(node)) {
+                for(int i= 0; i<graph.degree(node); i++) {
+                    int nChild = graph.neighbor(node, i);
                     boolean worked2= true;
-                    for(Site tChild: graph.neighbors(target)) {
+                    for(int j= 0; j<graph.degree(target); j++) {
+                        int tChild = graph.neighbor(target, j);
                         boolean temp= isBestMovebidiDLS(nChild, tChild, depth-1);
                         if(!temp) {
                             worked2= temp;
@@ -110,30 +188,50 @@ public class SiteGraphSearcher {
         return false;
     }
 
+    /**
+     * Adds the positions searched and cache lookups made since the last report to stats, along 
+     * with the deepest search started, and starts counting again.
+     */
+    public void report(SearchStats stats) {
+        stats.count(nodes, 0, probes, hits);
+        stats.reached(depth);
+        nodes = probes = hits = 0;
+        depth = 0;
+    }
+
+    /**
+     * @return true if there is an edge between the Sites with indices node and other
+     */
+    private boolean isNeighbor(int node, int other) {
+        for(int i= 0; i<graph.degree(node); i++)
+            if(graph.neighbor(node, i)==other) return true;
+        return false;
+    }
+
     private Stack<Site[]> shortestSiteStack(Site from, Site to) {
         Queue<Site[]> temp = new LinkedList<Site[]>();
         Stack<Site[]> moves = new Stack<Site[]>();
 
-        graph.mark(from);
-        for(Site site: graph.neighbors(from)) {
-            if(!graph.isMarked(site)) {
-                temp.add(new Site[] {from,site});
-                graph.mark(site);
-            }
+        visited.clear();
+        int f = graph.indexOf(from);
+        visited.mark(f);
+        for(int i= 0; i<graph.degree(f); i++) {
+            int n = graph.neighbor(f, i);
+            if(visited.visit(n))
+                temp.add(new Site[] {from,graph.vertexAt(n)});
         }
 
         while(!temp.isEmpty()) {
             Site[] sites = temp.poll();
             moves.push(sites);
             if(sites[1].equals(to)) break;
-            for(Site site: graph.neighbors(sites[1])) {
-                if(!graph.isMarked(site)) {
-                    temp.add(new Site[] {sites[1],site});
-                    graph.mark(site);
-                }
+            int s = graph.indexOf(sites[1]);
+            for(int i= 0; i<graph.degree(s); i++) {
+                int n = graph.neighbor(s, i);
+                if(visited.visit(n))
+                    temp.add(new Site[] {sites[1],graph.vertexAt(n)});
             }
         }
-        graph.clearMarks();
 
         return moves;
     }
@@ -154,23 +252,24 @@ public class SiteGraphSearcher {
         Stack<Site[]> fMoves = new Stack<Site[]>(), tMoves = new Stack<Site[]>();
         Stack<Site> moves = new Stack<Site>();  
 
-        graph.mark(from);
+        visited.clear();
+        visited.mark(graph.indexOf(from));
         for(Site site: graph.neighbors(from)) {
             if(site.equals(to)) {}
             fTemp.add(new Site[] {from,site});
-            graph.mark(site);
+            visited.mark(graph.indexOf(site));
             fromList.add(site);
         }   
 
-        graph.mark(to);
+        visited.mark(graph.indexOf(to));
         for(Site site: graph.neighbors(to)) {
             tTemp.add(new Site[] {to,site});
-            if(graph.isMarked(site) && fromList.contains(site)) {
+            if(visited.isMarked(graph.indexOf(site)) && fromList.contains(site)) {
                 tFound= true;
                 break;
             }
             toList.add(site);
-            graph.mark(site);
+            visited.mark(graph.indexOf(site));
         } 
 
         if(tFound) {
@@ -188,27 +287,27 @@ public class SiteGraphSearcher {
             
             for(Site site: graph.neighbors(fSites[1])) {    
                 fTemp.add(new Site[] {fSites[1],site});
-                if(graph.isMarked(site) && toList.contains(site)) {
+                if(visited.isMarked(graph.indexOf(site)) && toList.contains(site)) {
                     fromList.add(site);
                     fConnectSite = site;
                     fFound = true;
                     break bigBreak;
                 }
                 else 
-                    graph.mark(site); 
+                    visited.mark(graph.indexOf(site)); 
             }
             
             for(Site site: graph.neighbors(tSites[1])) {
                 tTemp.add(new Site[] {tSites[1],site});//I chose to put them in the same way.
 //While this does make it a bit more difficult to code, the consistency makes it less confusing.
-                if(graph.isMarked(site) && fromList.contains(site)) {
+                if(visited.isMarked(graph.indexOf(site)) && fromList.contains(site)) {
                     toList.add(site);
                     tConnectSite = site;
                     tFound = true;
                     break bigBreak;
                 }
                 else 
-                    graph.mark(site);
+                    visited.mark(graph.indexOf(site));
             }
         }
         if(fFound) {
@@ -0,0 +1,264 @@
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Scanner;
+import java.util.stream.IntStream;
+/*************************************************************************
+ *  Compilation:  javac Tablebase.java
+ *
+ *  Execution:
+ *      java Tablebase dungeonX [dungeonY ...]
+ *          solves each dungeon and writes it to dungeons/dungeonX.tb
+ *
+ *  An endgame tablebase: the outcome of every position in a dungeon,
+ *  worked out once, ahead of time, by retrograde analysis.
+ *
+ *  A position is the monster's site, the rogue's site and whose turn it
+ *  is. Its value is the number of moves (plies, counting both sides) 
+ *  until the monster catches the rogue when both play perfectly, or 
+ *  FOREVER if the rogue can stay away indefinitely.
+ *
+ *  The analysis works backwards from the captured positions. In round k,
+ *  a position with the monster to move is lost for the rogue in k plies
+ *  if the monster has a move to a position lost in k - 1, and one with
+ *  the rogue to move if all of the rogue's moves lead to positions lost 
+ *  in fewer than k. Each round is spread over all cores, and whatever is
+ *  left once a round finds nothing new is FOREVER.
+ *
+ *  There are two positions for every pair of sites, walls included, so
+ *  only dungeons of up to MAX_SITES sites (64 x 64) can be solved.
+ *************************************************************************/
+
+public class Tablebase {
+    public static final short FOREVER   = -1;
+    public static final int   MAX_SITES = 4096;  // sites, walls included: 64 MB of plies
+
+    private static final int MAGIC   = 0x52475442;   // "RGTB"
+    private static final int VERSION = 1;
+    private static final int HEADER  = 16;           // magic, version, size, layout hash
+
+    private static final int MONSTER = 0;            // monster to move
+    private static final int ROGUE   = 1;            // rogue to move
+
+    private final Graph<Site> graph;
+    private final int sites;
+    private final ShortBuffer plies;                 // by (monster * sites + rogue) * 2 + side
+
+    private Tablebase(Graph<Site> graph, int sites, ShortBuffer plies) {
+        this.graph = graph;
+        this.sites = sites;
+        this.plies = plies;
+    }
+
+    /*
+     * Solves every position of dungeon, whose legal moves are given by graph
+     */
+    public static Tablebase solve(Dungeon dungeon, final Graph<Site> graph) {
+        long positions = 2L * dungeon.size() * dungeon.size() * dungeon.size() * dungeon.size();
+        if(positions > 2L * MAX_SITES * MAX_SITES)
+            throw new IllegalArgumentException("can't solve a " + dungeon.size() + " x " + dungeon.size()
+                                               + " dungeon, a tablebase holds at most " + MAX_SITES + " sites");
+        final int sites = dungeon.size() * dungeon.size();
+        final short[] plies = new short[(int) positions];
+        java.util.Arrays.fill(plies, FOREVER);
+
+        for(int v = 0; v < sites; v += 1) {
+            if(graph.degree(v) == 0) continue;   // walls
+            plies[index(sites, v, v, MONSTER)] = 0;
+            plies[index(sites, v, v, ROGUE)]   = 0;
+        }
+
+        for(int k = 1; k < Short.MAX_VALUE; k += 1) {
+            final short ply = (short) k;
+            // Rows are only written by the thread working on their monster site, and
+            // anything resolved during this round has a value of k, which is ignored 
+            // when reading, so the threads don't get in each other's way.
+            long found = IntStream.range(0, sites).parallel().mapToLong(m -> {
+                long count = 0;
+                if(graph.degree(m) == 0) return 0;
+                for(int r = 0; r < sites; r += 1) {
+                    if(graph.degree(r) == 0) continue;
+
+                    int p = index(sites, m, r, MONSTER);
+                    if(plies[p] == FOREVER) {
+                        for(int i = 0; i < graph.degree(m); i += 1) {
+                            short next = plies[index(sites, graph.neighbor(m, i), r, ROGUE)];
+                            if(next != FOREVER && next < ply) {
+                                plies[p] = ply;
+                                count += 1;
+                                break;
+                            }
+                        }
+                    }
+
+                    p = index(sites, m, r, ROGUE);
+                    if(plies[p] == FOREVER) {
+                        boolean lost = true;
+                        for(int i = 0; i < graph.degree(r) && lost; i += 1) {
+                            short next = plies[index(sites, m, graph.neighbor(r, i), MONSTER)];
+                            lost = (next != FOREVER && next < ply);
+                        }
+                        if(lost) {
+                            plies[p] = ply;
+                            count += 1;
+                        }
+                    }
+                }
+                return count;
+            }).sum();
+            if(found == 0) break;
+        }
+        return new Tablebase(graph, sites, ShortBuffer.wrap(plies));
+    }
+
+    /*
+     * Maps a tablebase written by write, without copying it into the heap
+     */
+    public static Tablebase load(File file, Dungeon dungeon, Graph<Site> graph) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+                throw new IOException(file + " isn't a tablebase");
+            if(buffer.getInt(8) != dungeon.size() || buffer.getInt(12) != layoutHash(dungeon))
+                throw new IOException(file + " was solved for a different dungeon");
+
+            buffer.position(HEADER);
+            return new Tablebase(graph, dungeon.size() * dungeon.size(), buffer.slice().asShortBuffer());
+        } finally {
+            raf.close();   // the mapping stays valid after the channel is closed
+        }
+    }
+
+    /*
+     * A tablebase for graph that has already been solved, as written by writePlies. 
+     * The values aren't copied, so they can come straight from a mapped file.
+     */
+    public static Tablebase wrap(Graph<Site> graph, ShortBuffer plies) {
+        int sites = graph.capacity();
+        if(plies.remaining() != 2L * sites * sites)
+            throw new IllegalArgumentException(plies.remaining() + " values for " + sites + " sites");
+        return new Tablebase(graph, sites, plies.slice());
+    }
+
+    /*
+     * Writes just the values, without the header write puts in front of them
+     */
+    public void writePlies(DataOutput out) throws IOException {
+        for(int i = 0; i < plies.capacity(); i += 1) out.writeShort(plies.get(i));
+    }
+
+    // how many values writePlies writes
+    public int entries() {
+        return plies.capacity();
+    }
+
+    /*
+     * Writes the tablebase for dungeon to file
+     */
+    public void write(File file, Dungeon dungeon) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(dungeon.size());
+            out.writeInt(layoutHash(dungeon));
+            writePlies(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /*
+     * @return plies until capture with the monster to move, or FOREVER
+     */
+    public int monsterToMove(Site monster, Site rogue) {
+        return plies.get(index(sites, graph.indexOf(monster), graph.indexOf(rogue), MONSTER));
+    }
+
+    /*
+     * @return plies until capture with the rogue to move, or FOREVER
+     */
+    public int rogueToMove(Site monster, Site rogue) {
+        return plies.get(index(sites, graph.indexOf(monster), graph.indexOf(rogue), ROGUE));
+    }
+
+    /*
+     * @return the monster's quickest way to catch the rogue, or null if the rogue can 
+     *         stay away forever
+     */
+    public Site bestMonsterMove(Site monster, Site rogue) {
+        int m = graph.indexOf(monster);
+        int r = graph.indexOf(rogue);
+        int best = -1, bestPlies = Integer.MAX_VALUE;
+        for(int i = 0; i < graph.degree(m); i += 1) {
+            int next  = graph.neighbor(m, i);
+            int value = plies.get(index(sites, next, r, ROGUE));
+            if(value != FOREVER && value < bestPlies) {
+                best      = next;
+                bestPlies = value;
+            }
+        }
+        return (best == -1) ? null : graph.vertexAt(best);
+    }
+
+    /*
+     * @return the rogue's move that stays away forever if there is one, and otherwise 
+     *         the one that puts off being caught the longest
+     */
+    public Site bestRogueMove(Site rogue, Site monster) {
+        int m = graph.indexOf(monster);
+        int r = graph.indexOf(rogue);
+        int best = r, bestPlies = -1;
+        for(int i = 0; i < graph.degree(r); i += 1) {
+            int next  = graph.neighbor(r, i);
+            int value = plies.get(index(sites, m, next, MONSTER));
+            if(value == FOREVER) return graph.vertexAt(next);
+            if(value > bestPlies) {
+                best      = next;
+                bestPlies = value;
+            }
+        }
+        return graph.vertexAt(best);
+    }
+
+    private static int index(int sites, int monster, int rogue, int side) {
+        return (monster * sites + rogue) * 2 + side;
+    }
+
+    // A hash of which sites are rooms and corridors, to catch tablebases for another dungeon
+    private static int layoutHash(Dungeon dungeon) {
+        int hash = 1;
+        for(int i = 0; i < dungeon.size(); i++)
+            for(int j = 0; j < dungeon.size(); j++) {
+                Site site = dungeon.site(i, j);
+                hash = 31 * hash + (dungeon.isRoom(site) ? 1 : dungeon.isCorridor(site) ? 2 : 0);
+            }
+        return hash;
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (String name : args) {
+            Scanner in = new Scanner(new File("dungeons/" + name + ".txt"));
+            Game game = new Game(in);
+            in.close();
+
+            long start = System.nanoTime();
+            Tablebase tablebase = solve(game.getDungeon(), game.getGraph());
+            File file = new File("dungeons/" + name + ".tb");
+            tablebase.write(file, game.getDungeon());
+
+            int plies = tablebase.monsterToMove(game.getMonsterSite(), game.getRogueSite());
+            System.out.println(name + ": solved in " + (System.nanoTime() - start) / 1000000 + " ms, "
+                + (plies == FOREVER ? "rogue survives forever" : "monster captures after " + (plies + 1) / 2 + " moves"));
+        }
+    }
+}
@@ -0,0 +1,219 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+/*************************************************************************
+ *  Compilation:  javac Tournament.java
+ *
+ *  Execution:
+ *      java Tournament [-games N] [-threads T] [-cap M] [-deadline MS] [-seed S] [-ponder] [dungeonX ...]
+ *
+ *  Plays the Monster against the Rogue over and over without a board or
+ *  a keyboard in the way, and reports how they did.
+ *
+ *      -games N      games per dungeon (default 1). The first game starts
+ *                    from the dungeon file's spawn points, the others from
+ *                    random open sites, since the same start always plays
+ *                    out the same way.
+ *      -threads T    games played at once (default: number of cores)
+ *      -cap M        moves after which the rogue counts as surviving (default 500)
+ *      -deadline MS  time allowed per move. The rogue searches within it, and
+ *                    moves by either side that take longer are counted.
+ *      -seed S       seed for the random starts (default 0)
+ *      -ponder       the rogue thinks on the monster's time too, on a thread
+ *                    of its own for each game
+ *
+ *  Games in the same dungeon share its graph and tables (see GraphRegistry),
+ *  so only the searches themselves are set up for each game.
+ *
+ *  With no dungeons given, every file in dungeons/ is played. Each line of
+ *  the report compares the results with the note at the bottom of the
+ *  dungeon file, e.g. "Monster can capture rogue after 58 moves".
+ *************************************************************************/
+
+public class Tournament {
+
+    private static final Pattern CAPTURE_AFTER = Pattern.compile("after (?:the )?(\\d+)");
+    private static final Pattern SURVIVES      = Pattern.compile(
+        "(?i)indefinitely|survive|stay alive|evade|rogue can win");
+
+    // the outcome of one game
+    private static class Result {
+        boolean caught;
+        int     turns;            // turns played, the capture turn if caught
+        int     monsterMoves;     // moves actually made, up to an error if there was one
+        int     rogueMoves;
+        long    nanos;            // time spent moving
+        int     late;             // moves that took longer than the deadline
+        String  error;            // why the game stopped early, if it did
+    }
+
+    // one dungeon file: the board and what its author says should happen
+    private static class Entry {
+        String name;
+        Game   original;          // spawn points from the file
+        String expected = "-";
+    }
+
+    public static void main(String[] args) throws Exception {
+        int  games    = 1;
+        int  threads  = Runtime.getRuntime().availableProcessors();
+        int  cap      = 500;
+        long deadline = 0;
+        long seed     = 0;
+        boolean ponder = false;
+        List<String> names = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++) {
+            if      (args[i].equals("-games"))    games    = Integer.parseInt(args[++i]);
+            else if (args[i].equals("-threads"))  threads  = Integer.parseInt(args[++i]);
+            else if (args[i].equals("-cap"))      cap      = Integer.parseInt(args[++i]);
+            else if (args[i].equals("-deadline")) deadline = Long.parseLong(args[++i]);
+            else if (args[i].equals("-seed"))     seed     = Long.parseLong(args[++i]);
+            else if (args[i].equals("-ponder"))   ponder   = true;
+            else                                  names.add(args[i]);
+        }
+        if (names.isEmpty()) {
+            String[] files = new File("dungeons").list();
+            java.util.Arrays.sort(files);
+            for (String file : files)
+                if (file.endsWith(".txt")) names.add(file.substring(0, file.length() - 4));
+        }
+
+        List<Entry> entries = new ArrayList<Entry>();
+        for (String name : names) entries.add(load(name));
+
+        // Submit every game, then collect them dungeon by dungeon
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<List<Future<Result>>> futures = new ArrayList<List<Future<Result>>>();
+        Random random = new Random(seed);
+        long start = System.nanoTime();
+        for (Entry entry : entries) {
+            List<Future<Result>> results = new ArrayList<Future<Result>>();
+            for (int g = 0; g < games; g++) {
+                Site[] spawn = (g == 0) ? null : randomSpawn(entry.original, random);
+                results.add(pool.submit(new Match(entry.original, spawn, cap, deadline, ponder)));
+            }
+            futures.add(results);
+        }
+
+        System.out.printf("%-10s %6s %9s %10s %9s %9s %6s %6s  %s%n",
+            "dungeon", "games", "survived", "avg catch", "1st game", "moves/s", "late", "errors", "expected");
+        long totalMoves = 0;
+        for (int e = 0; e < entries.size(); e++) {
+            int survived = 0, caught = 0, late = 0, errors = 0;
+            long catchTurns = 0, moves = 0, nanos = 0;
+            String first = "";
+            for (int g = 0; g < games; g++) {
+                Result r = futures.get(e).get(g).get();
+                if (r.error != null)  errors++;
+                else if (r.caught)  { caught++; catchTurns += r.turns; }
+                else                  survived++;
+                late  += r.late;
+                moves += r.monsterMoves + r.rogueMoves;
+                nanos += r.nanos;
+                if (g == 0) first = (r.error != null) ? "error" : r.caught ? "caught@" + r.turns : "survived";
+            }
+            totalMoves += moves;
+            System.out.printf("%-10s %6d %8.1f%% %10s %9s %9.0f %6d %6d  %s%n",
+                entries.get(e).name, games, 100.0 * survived / games,
+                caught == 0 ? "-" : String.format("%.1f", (double) catchTurns / caught),
+                first, moves / (nanos / 1e9), late, errors, entries.get(e).expected);
+        }
+        pool.shutdown();
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d games, %d moves in %.1f s on %d threads (%.0f moves/s)%n",
+            games * entries.size(), totalMoves, seconds, threads, totalMoves / seconds);
+    }
+
+    // plays one game to capture or the move cap
+    private static class Match implements java.util.concurrent.Callable<Result> {
+        private final Game   original;
+        private final Site[] spawn;
+        private final int    cap;
+        private final long   deadline;
+        private final boolean ponder;
+
+        Match(Game original, Site[] spawn, int cap, long deadline, boolean ponder) {
+            this.original = original;
+            this.spawn    = spawn;
+            this.cap      = cap;
+            this.deadline = deadline;
+            this.ponder   = ponder;
+        }
+
+        public Result call() {
+            Result result = new Result();
+            Game   game   = null;
+            try {
+                Site monsterSite = (spawn == null) ? original.getMonsterSite() : spawn[0];
+                Site rogueSite   = (spawn == null) ? original.getRogueSite()   : spawn[1];
+                game = new Game(original.getDungeon(), original.getMonsterDisp(), monsterSite, rogueSite);
+                game.getRogue().setTimeBudget(deadline);
+                game.getRogue().setPondering(ponder);
+
+                long limit = deadline * 1000000;
+                for (result.turns = 1; result.turns <= cap; result.turns++) {
+                    if (game.getMonsterSite().equals(game.getRogueSite())) break;
+                    long t = System.nanoTime();
+                    game.moveMonster();
+                    long m = System.nanoTime() - t;
+                    result.monsterMoves++;
+                    result.nanos += m;
+                    if (limit > 0 && m > limit) result.late++;
+
+                    if (game.getMonsterSite().equals(game.getRogueSite())) break;
+                    t = System.nanoTime();
+                    game.moveRogue();
+                    long r = System.nanoTime() - t;
+                    result.rogueMoves++;
+                    result.nanos += r;
+                    if (limit > 0 && r > limit) result.late++;
+                }
+                result.caught = game.getMonsterSite().equals(game.getRogueSite());
+                if (!result.caught) result.turns = cap;
+            } catch (RuntimeException e) {
+                result.error = e.toString();
+            } finally {
+                if (game != null) game.getRogue().setPondering(false);   // lets the ponder thread go
+            }
+            return result;
+        }
+    }
+
+    private static Entry load(String name) throws Exception {
+        Entry entry = new Entry();
+        entry.name = name;
+        Scanner in = new Scanner(new File("dungeons/" + name + ".txt"));
+        entry.original = new Game(in);
+
+        // whatever follows the board is the author's note about the dungeon
+        StringBuilder note = new StringBuilder();
+        while (in.hasNextLine()) note.append(in.nextLine()).append(' ');
+        in.close();
+        Matcher m = CAPTURE_AFTER.matcher(note);
+        if      (m.find())                          entry.expected = "caught@" + m.group(1);
+        else if (SURVIVES.matcher(note).find())     entry.expected = "survives";
+        return entry;
+    }
+
+    // two different open sites, for the monster and the rogue
+    private static Site[] randomSpawn(Game game, Random random) {
+        Dungeon dungeon = game.getDungeon();
+        GridMap graph   = game.getGraph();
+        List<Site> open = new ArrayList<Site>();
+        for (int v = 0; v < graph.capacity(); v++)
+            if (graph.degree(v) > 0) open.add(graph.vertexAt(v));
+
+        Site monster = open.get(random.nextInt(open.size()));
+        Site rogue;
+        do { rogue = open.get(random.nextInt(open.size())); } while (rogue.equals(monster));
+        return new Site[] { dungeon.intern(monster), dungeon.intern(rogue) };
+    }
+}
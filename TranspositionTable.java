@@ -0,0 +1,134 @@
+import java.util.Random;
+/**
+ * A fixed size hash table remembering the values minimax has already worked
+ * out for a position, so that positions reached through different orders of
+ * moves (or by standing still) are only searched once.
+ * 
+ * Positions are hashed with Zobrist keys: one random number per site for the
+ * rogue, one per site for the monster and one for the side to move, xor'ed
+ * together. Since alpha-beta doesn't always find the exact value of a node,
+ * each entry also records whether its value is exact, a lower bound or an
+ * upper bound, and how deep the search below it went.
+ * 
+ * When two positions land on the same slot, the entry from the deeper search
+ * is kept, unless the other one is left over from an earlier move.
+ * 
+ * Entries also remember the best move found from the position, the site
+ * moved to, so that searching it again, even deeper, can try that move first.
+ * 
+ * Several threads can share a table without locking: each entry is stored
+ * as three longs, and the first is the key xor'ed with the other two. An
+ * entry half written by another thread then simply fails to match its key
+ * and is treated as missing.
+ */
+public class TranspositionTable {
+    public static final byte EXACT = 0;
+    public static final byte LOWER = 1;   // the value is at least this
+    public static final byte UPPER = 2;   // the value is at most this
+
+    private final long[] rogueKeys;
+    private final long[] monsterKeys;
+    private final long   rogueToMoveKey;
+
+    private final int mask;
+    private final long[] checks;   // key ^ values ^ infos
+    private final long[] values;   // raw bits of the value
+    private final long[] infos;    // depth, bound, age and best move packed together
+    private volatile int age = 1;  // 0 marks an empty slot
+
+    /*
+     * What probe found for a position. Each searching thread keeps its own.
+     */
+    public static class Entry {
+        private double value;
+        private int    depth;
+        private byte   bound;
+        private int    move;
+        private boolean current;
+
+        public double value() { return value; }
+        public int    depth() { return depth; }
+        public byte   bound() { return bound; }
+        // the site the best move found went to, -1 if none was
+        public int    move()  { return move;  }
+        // true if the entry was stored during the current search, since newSearch()
+        public boolean isCurrent() { return current; }
+    }
+
+    /*
+     * Creates a table for a graph with the given number of sites, holding 
+     * 2^bits entries.
+     */
+    public TranspositionTable(int sites, int bits) {
+        Random random = new Random(sites);   // fixed seed, so that games replay the same way
+        rogueKeys   = new long[sites];
+        monsterKeys = new long[sites];
+        for(int i = 0; i < sites; i += 1) {
+            rogueKeys[i]   = random.nextLong();
+            monsterKeys[i] = random.nextLong();
+        }
+        rogueToMoveKey = random.nextLong();
+
+        mask   = (1 << bits) - 1;
+        checks = new long[1 << bits];
+        values = new long[1 << bits];
+        infos  = new long[1 << bits];
+    }
+
+    /*
+     * @return the Zobrist key of the position with the rogue and monster on the given sites
+     */
+    public long key(int rogue, int monster, boolean rogueToMove) {
+        long key = rogueKeys[rogue] ^ monsterKeys[monster];
+        return rogueToMove ? key ^ rogueToMoveKey : key;
+    }
+
+    /*
+     * Called once per move, entries from earlier moves become the first to be replaced.
+     */
+    public void newSearch() {
+        age = (age == 0xFF) ? 1 : age + 1;
+    }
+
+    /*
+     * Forgets everything in the table
+     */
+    public void clear() {
+        java.util.Arrays.fill(infos, 0);
+    }
+
+    /*
+     * Looks up the position key, filling in entry if it is found.
+     * @return true if the position is in the table, false otherwise
+     */
+    public boolean probe(long key, Entry entry) {
+        int  slot  = (int) key & mask;
+        long value = values[slot];
+        long info  = infos[slot];
+        if(info == 0 || (checks[slot] ^ value ^ info) != key) return false;
+
+        entry.value = Double.longBitsToDouble(value);
+        entry.depth = (int) (info & 0xFF);
+        entry.bound = (byte) ((info >>> 8) & 0xFF);
+        entry.move  = (int) (info >>> 24) - 1;
+        entry.current = ((info >>> 16) & 0xFF) == age;
+        return true;
+    }
+
+    /*
+     * Remembers the result of searching the position key to the given depth, and
+     * the site the best move went to (-1 if no move was better than the others)
+     */
+    public void store(long key, int depth, double value, byte bound, int move) {
+        int  slot = (int) key & mask;
+        long old  = infos[slot];
+        if(((old >>> 16) & 0xFF) == age && (old & 0xFF) > depth 
+        && (checks[slot] ^ values[slot] ^ old) != key) return;
+
+        long bits = Double.doubleToRawLongBits(value);
+        long info = depth | (bound << 8) | ((long) age << 16) | ((long) (move + 1) << 24);
+        values[slot] = bits;
+        infos[slot]  = info;
+        checks[slot] = key ^ bits ^ info;
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * Which vertices a search has visited, by their index in the graph.
+ * 
+ * Each vertex keeps the number of the search that last marked it, so
+ * starting a new search is just a matter of counting up, rather than 
+ * unmarking every vertex or building a new set. Every search keeps its
+ * own VisitMarks, so several of them can run on one graph at once.
+ */
+public class VisitMarks {
+    private final int[] stamps;
+    private int epoch = 1;
+
+    public VisitMarks(int capacity) {
+        stamps = new int[capacity];
+    }
+
+    /*
+     * Unmarks every vertex
+     */
+    public void clear() {
+        epoch += 1;
+        if(epoch == Integer.MAX_VALUE) {   // about to run out of numbers, so start over
+            java.util.Arrays.fill(stamps, 0);
+            epoch = 1;
+        }
+    }
+
+    public boolean isMarked(int index) {
+        return stamps[index] == epoch;
+    }
+
+    public void mark(int index) {
+        stamps[index] = epoch;
+    }
+
+    /*
+     * Marks the vertex at index
+     * @return true if it wasn't marked already
+     */
+    public boolean visit(int index) {
+        if(stamps[index] == epoch) return false;
+        stamps[index] = epoch;
+        return true;
+    }
+}
@@ -0,0 +1,28 @@
+import java.io.File;
+import java.util.Scanner;
+/*************************************************************************
+ *  Boards for the benchmarks: either one of the shipped dungeons, by name
+ *  ("dungeonA"), or a generated one ("large64" for a 64 x 64 board).
+ *
+ *  Generated boards come from DungeonGenerator with a fixed seed and the
+ *  default settings, so every run measures the same dungeons. They show
+ *  how the costs grow with the size of the board, which the 20 x 20
+ *  shipped dungeons hide.
+ *************************************************************************/
+
+public class Boards {
+    private static final long SEED = 1;
+
+    public static Game load(String name) throws Exception {
+        if (name.startsWith("large")) return generate(Integer.parseInt(name.substring(5)));
+
+        Scanner in = new Scanner(new File("dungeons/" + name + ".txt"));
+        Game game = new Game(in);
+        in.close();
+        return game;
+    }
+
+    public static Game generate(int size) {
+        return new DungeonGenerator(size, SEED).game();
+    }
+}
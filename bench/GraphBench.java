@@ -0,0 +1,88 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+/*************************************************************************
+ *  Benchmarks for building the dungeon graph and walking its neighbors.
+ *
+ *  JPMap is only built for the shipped dungeons, since its V x V matrix
+ *  doesn't fit in memory for the large generated boards.
+ *************************************************************************/
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphBench {
+
+    @Param({"dungeonA", "dungeonD", "dungeonK", "dungeonO", "large64", "large256", "large1000"})
+    public String board;
+
+    private Game          game;
+    private Dungeon       dungeon;
+    private GridMap       graph;
+    private JPMap<Site>   matrix;
+
+    @Setup
+    public void setUp() throws Exception {
+        game    = Boards.load(board);
+        dungeon = game.getDungeon();
+        graph   = game.getGraph();
+        if (dungeon.size() <= 20) {
+            matrix = new JPMap<Site>(graph.capacity());
+            for (int v = 0; v < graph.capacity(); v++) matrix.addVertex(graph.vertexAt(v));
+            for (int v = 0; v < graph.capacity(); v++)
+                for (int k = 0; k < graph.degree(v); k++)
+                    matrix.addEdge(graph.vertexAt(v), graph.vertexAt(graph.neighbor(v, k)));
+        }
+    }
+
+    // neighbors() of every site, through the old adjacency matrix
+    @Benchmark
+    public void jpmapNeighbors(Blackhole bh) {
+        if (matrix == null) return;
+        for (int v = 0; v < graph.capacity(); v++) bh.consume(matrix.neighbors(graph.vertexAt(v)));
+    }
+
+    // neighbors() of every site, through the grid graph
+    @Benchmark
+    public void gridNeighbors(Blackhole bh) {
+        for (int v = 0; v < graph.capacity(); v++) bh.consume(graph.neighbors(graph.vertexAt(v)));
+    }
+
+    // every neighbor of every site, by index, which is what the searches use
+    @Benchmark
+    public int gridNeighborIndices() {
+        int sum = 0;
+        for (int v = 0; v < graph.capacity(); v++)
+            for (int k = 0; k < graph.degree(v); k++) sum += graph.neighbor(v, k);
+        return sum;
+    }
+
+    @Benchmark
+    public GridMap buildGraph() {
+        return new GridMap(dungeon);
+    }
+
+    @Benchmark
+    public Monster buildMonster() {
+        return new Monster(game);
+    }
+
+    @Benchmark
+    public JPRogue buildRogue() {
+        return new JPRogue(game);
+    }
+}
@@ -0,0 +1,65 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+/*************************************************************************
+ *  Benchmarks for the shortest path and corridor heuristics the creatures
+ *  use, from the starting position of each board. None of them has a
+ *  depth, so they are kept apart from SearchBench.
+ *************************************************************************/
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeuristicBench {
+
+    @Param({"dungeonA", "dungeonD", "dungeonK", "dungeonO", "large64", "large256"})
+    public String board;
+
+    private Game              game;
+    private JPRogue           rogue;
+    private SiteGraphSearcher searcher;
+    private Site              monsterSite, rogueSite;
+    private Site[]            sites;
+
+    @Setup
+    public void setUp() throws Exception {
+        game        = Boards.load(board);
+        rogue       = game.getRogue();
+        searcher    = new SiteGraphSearcher(game.getGraph());
+        monsterSite = game.getMonsterSite();
+        rogueSite   = game.getRogueSite();
+
+        GridMap graph = game.getGraph();
+        sites = new Site[graph.capacity()];
+        for (int v = 0; v < sites.length; v++) sites[v] = graph.vertexAt(v);
+    }
+
+    @Benchmark
+    public Site siteOnShortestPath() {
+        return searcher.siteOnShortestPath(monsterSite, rogueSite);
+    }
+
+    @Benchmark
+    public CorridorAnalysis corridorAnalysis() {
+        return new CorridorAnalysis(game.getDungeon(), game.getGraph());
+    }
+
+    @Benchmark
+    public JPRogue findCorridors() {
+        rogue.findCorridors(sites);
+        return rogue;
+    }
+}
@@ -0,0 +1,66 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+/*************************************************************************
+ *  Benchmarks for the game tree searches the creatures run on every move,
+ *  from the starting position of each board, at several depths.
+ *************************************************************************/
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBench {
+
+    @Param({"dungeonA", "dungeonD", "dungeonK", "dungeonO", "large64", "large256"})
+    public String board;
+
+    // minimax depth, must be even
+    @Param({"2", "4", "6", "8"})
+    public int depth;
+
+    private Game              game;
+    private JPRogue           rogue;
+    private SiteGraphSearcher searcher;
+    private Site              monsterSite, rogueSite;
+
+    @Setup
+    public void setUp() throws Exception {
+        game        = Boards.load(board);
+        rogue       = game.getRogue();
+        searcher    = new SiteGraphSearcher(game.getGraph());
+        monsterSite = game.getMonsterSite();
+        rogueSite   = game.getRogueSite();
+    }
+
+    // a fresh table for every call, so each one searches the whole tree; emptying it
+    // costs more than the shallow searches do, so it is left out of the timing
+    @Setup(Level.Invocation)
+    public void resetSearch() {
+        rogue.resetSearch();
+    }
+
+    @Benchmark
+    public double minimax() {
+        return rogue.evaluate(rogueSite, monsterSite, depth);
+    }
+
+    // the old forced-capture search, depth / 2 deep as it gets slow quickly
+    @Benchmark
+    public Site bestMovebidiIDDFS() {
+        return searcher.bestMovebidiIDDFS(monsterSite, rogueSite, depth / 2);
+    }
+}